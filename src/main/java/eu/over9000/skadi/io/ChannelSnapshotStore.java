@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.io;
+
+import eu.over9000.skadi.model.Channel;
+import eu.over9000.skadi.model.ChannelKey;
+import eu.over9000.skadi.remote.data.ChannelMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the last known metadata of the channels in a small binary file, written on shutdown and restored on startup
+ * so the channel list is filled before the first poll returns. Restored channels are marked stale until refreshed.
+ */
+public class ChannelSnapshotStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ChannelSnapshotStore.class);
+
+	private static final int FILE_MAGIC = 0x534b4353;
+	private static final int FILE_VERSION = 1;
+
+	private static final byte ONLINE_UNKNOWN = 0;
+	private static final byte ONLINE_FALSE = 1;
+	private static final byte ONLINE_TRUE = 2;
+
+	private final Path file;
+	// the restored uptime is relative to the startup, stale channels keep their stream start from the snapshot
+	private final Map<ChannelKey, Long> restoredStreamStarts = new ConcurrentHashMap<>();
+
+	public ChannelSnapshotStore(final Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Restores the snapshot entries of the given channels, channels without an entry are left untouched.
+	 *
+	 * @return the number of restored channels
+	 */
+	public int restore(final Collection<Channel> channels) {
+		if (!Files.exists(file)) {
+			return 0;
+		}
+
+		final Map<ChannelKey, Channel> lookup = new HashMap<>();
+		channels.forEach(channel -> lookup.put(channel.getKey(), channel));
+
+		final long now = System.currentTimeMillis();
+		int restored = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+				LOGGER.warn("ignoring channel snapshot with unknown format in " + file);
+				return 0;
+			}
+
+			final int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				final String name = in.readUTF();
+				final byte onlineState = in.readByte();
+				final long updated = in.readLong();
+				final long viewer = in.readLong();
+				final long streamStart = in.readLong();
+				final String title = readNullableUTF(in);
+				final String game = readNullableUTF(in);
+				final String logoURL = readNullableUTF(in);
+
+				final Channel channel = lookup.get(ChannelKey.of(name));
+				if (channel == null) {
+					continue;
+				}
+
+				final Boolean online = onlineState == ONLINE_UNKNOWN ? null : onlineState == ONLINE_TRUE;
+				// the uptime keeps counting from the stream start
+				final Long uptime = Boolean.TRUE.equals(online) ? Math.max(0, now - streamStart) : null;
+				channel.restoreFrom(new ChannelMetadata(title, viewer, uptime, online, game, logoURL, null, null, null), updated);
+				restoredStreamStarts.put(channel.getKey(), streamStart);
+				restored++;
+			}
+			LOGGER.debug("restored " + restored + " of " + count + " channels from snapshot");
+		} catch (final IOException e) {
+			LOGGER.error("exception loading channel snapshot", e);
+		}
+		return restored;
+	}
+
+	public void save(final Collection<Channel> channels) {
+		final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try {
+			Files.createDirectories(file.getParent());
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(FILE_MAGIC);
+				out.writeInt(FILE_VERSION);
+				out.writeInt(channels.size());
+				for (final Channel channel : channels) {
+					final long updated = channel.getLastUpdatedMillis();
+					out.writeUTF(channel.getName());
+					out.writeByte(channel.isOnline() == null ? ONLINE_UNKNOWN : channel.isOnline() ? ONLINE_TRUE : ONLINE_FALSE);
+					out.writeLong(updated);
+					out.writeLong(channel.getViewer());
+					out.writeLong(getStreamStart(channel));
+					writeNullableUTF(out, channel.getTitle());
+					writeNullableUTF(out, channel.getGame());
+					writeNullableUTF(out, channel.getLogoURL());
+				}
+			}
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOGGER.debug("wrote snapshot of " + channels.size() + " channels");
+		} catch (final IOException e) {
+			LOGGER.error("exception saving channel snapshot", e);
+		}
+	}
+
+	private long getStreamStart(final Channel channel) {
+		final Long restored = restoredStreamStarts.get(channel.getKey());
+		if (restored != null && channel.isStale()) {
+			return restored;
+		}
+		return channel.getLastUpdatedMillis() - channel.getUptime();
+	}
+
+	private static String readNullableUTF(final DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeNullableUTF(final DataOutputStream out, final String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+}
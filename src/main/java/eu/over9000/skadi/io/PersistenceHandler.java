@@ -23,40 +23,62 @@
 package eu.over9000.skadi.io;
 
 import eu.over9000.skadi.model.StateContainer;
+import eu.over9000.skadi.util.ExecutorUtil;
 import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Loads and saves the {@link StateContainer}. Saving is write-behind: the save requests within {@link #WRITE_DELAY}
+ * milliseconds are coalesced into one write on the scheduler thread, {@link #flush()} writes a pending state right
+ * away. The file is replaced atomically, a crash during a write leaves the previous state intact.
+ * <p>
+ * The state is stored as JSON by the {@link StateCodec}. A state file in the XML format of earlier versions is read
+ * once and written as JSON, the XML file is left untouched.
+ */
 public final class PersistenceHandler {
 
 	public static final String SKADI_DIRECTORY_NAME = ".skadi";
 	public static final String PERSISTENCE_DIRECTORY = SystemUtils.USER_HOME + File.separator + SKADI_DIRECTORY_NAME + File.separator;
-	public static final String PERSISTENCE_FILE = "skadi_state.xml";
+	public static final String PERSISTENCE_FILE = "skadi_state.json";
+	public static final String LEGACY_PERSISTENCE_FILE = "skadi_state.xml";
+	public static final long WRITE_DELAY = 500;
+	private static final String TEMP_SUFFIX = ".tmp";
 	private static final Logger LOGGER = LoggerFactory.getLogger(PersistenceHandler.class);
 	private final Object fileLock = new Object();
-	private Marshaller marshaller;
-	private Unmarshaller unmarshaller;
+	private final Path directory;
+	private final long writeDelay;
+	private final AtomicReference<StateContainer> pendingState = new AtomicReference<>();
+	private final AtomicBoolean writeScheduled = new AtomicBoolean();
+	private final AtomicInteger writeCount = new AtomicInteger();
 
 	public PersistenceHandler() {
-		try {
-			final JAXBContext context = JAXBContext.newInstance(StateContainer.class);
-			marshaller = context.createMarshaller();
-			unmarshaller = context.createUnmarshaller();
-			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+		this(Paths.get(PERSISTENCE_DIRECTORY), WRITE_DELAY);
+	}
 
-		} catch (final JAXBException e) {
-			LOGGER.error("exception construction persistence handler", e);
-		}
+	/**
+	 * @param writeDelay the time in milliseconds save requests are coalesced, 0 to write on the calling thread
+	 */
+	public PersistenceHandler(final Path directory, final long writeDelay) {
+		this.directory = directory;
+		this.writeDelay = writeDelay;
 	}
 
 	public StateContainer loadState() {
@@ -64,50 +86,121 @@ public final class PersistenceHandler {
 		try {
 			if (Files.exists(getStateFilePath())) {
 				result = readFromFile();
+			} else if (Files.exists(getLegacyStateFilePath())) {
+				result = migrateLegacyFile();
 			} else {
 				checkDir();
 				result = new StateContainer();
-				writeToFile(result);
+				synchronized (fileLock) {
+					writeToFile(result);
+				}
 			}
-		} catch (IOException | JAXBException e) {
+		} catch (final IOException e) {
 			LOGGER.error("exception loading state, will fallback to default settings", e);
 			result = new StateContainer();
 		}
 		return result;
 	}
 
+	/**
+	 * Requests the state to be saved. The state is written after the write delay, together with all other requests
+	 * made until then.
+	 */
 	public void saveState(final StateContainer state) {
-		try {
-			checkDir();
-			writeToFile(state);
-		} catch (IOException | JAXBException e) {
-			LOGGER.error("exception saving state", e);
+		pendingState.set(state);
+		if (writeDelay <= 0) {
+			flush();
+			return;
+		}
+		if (writeScheduled.compareAndSet(false, true)) {
+			try {
+				ExecutorUtil.getSchedulerService().schedule(() -> {
+					writeScheduled.set(false);
+					flush();
+				}, writeDelay, TimeUnit.MILLISECONDS);
+			} catch (final RejectedExecutionException e) {
+				writeScheduled.set(false);
+				flush();
+			}
 		}
 	}
 
+	/**
+	 * Writes the pending state, if any, and waits for a write in progress to finish. Called on shutdown.
+	 */
+	public void flush() {
+		synchronized (fileLock) {
+			final StateContainer state = pendingState.getAndSet(null);
+			if (state == null) {
+				return;
+			}
+			try {
+				checkDir();
+				writeToFile(state);
+			} catch (final IOException e) {
+				LOGGER.error("exception saving state", e);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of times the state file was written
+	 */
+	int getWriteCount() {
+		return writeCount.get();
+	}
+
 	private Path getStateFilePath() {
-		return Paths.get(PERSISTENCE_DIRECTORY, PERSISTENCE_FILE);
+		return directory.resolve(PERSISTENCE_FILE);
+	}
+
+	private Path getLegacyStateFilePath() {
+		return directory.resolve(LEGACY_PERSISTENCE_FILE);
 	}
 
-	private void writeToFile(final StateContainer state) throws IOException, JAXBException {
+	/**
+	 * Writes the state to a temporary file that then replaces the state file. The caller must hold the file lock.
+	 */
+	private void writeToFile(final StateContainer state) throws IOException {
 		final Path stateFile = getStateFilePath();
-		synchronized (fileLock) {
-			marshaller.marshal(state, stateFile.toFile());
+		final Path tempFile = stateFile.resolveSibling(PERSISTENCE_FILE + TEMP_SUFFIX);
+		try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+			StateCodec.write(state, writer);
 		}
+		try {
+			Files.move(tempFile, stateFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (final AtomicMoveNotSupportedException e) {
+			Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+		writeCount.incrementAndGet();
 		LOGGER.debug("wrote state to file");
 	}
 
-	private StateContainer readFromFile() throws IOException, JAXBException {
+	private StateContainer readFromFile() throws IOException {
 		final Path stateFile = getStateFilePath();
 		final StateContainer state;
 		synchronized (fileLock) {
-			state = (StateContainer) unmarshaller.unmarshal(stateFile.toFile());
+			try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+				state = StateCodec.read(reader);
+			}
 		}
 		LOGGER.debug("load state from file");
 		return state;
 	}
 
+	private StateContainer migrateLegacyFile() throws IOException {
+		final StateContainer state;
+		synchronized (fileLock) {
+			try (InputStream input = Files.newInputStream(getLegacyStateFilePath())) {
+				state = StateCodec.readLegacyXml(input);
+			}
+			writeToFile(state);
+		}
+		LOGGER.info("migrated state from " + LEGACY_PERSISTENCE_FILE + " to " + PERSISTENCE_FILE);
+		return state;
+	}
+
 	private void checkDir() throws IOException {
-		Files.createDirectories(Paths.get(PERSISTENCE_DIRECTORY));
+		Files.createDirectories(directory);
 	}
 }
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.io;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import eu.over9000.skadi.model.StateContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Reads and writes the {@link StateContainer} as a flat JSON object using the streaming API of gson, without
+ * reflection. The keys are the element names of the XML format written by earlier versions, which can still be read
+ * by {@link #readLegacyXml} for the migration. Unknown keys are skipped and missing keys keep their default value.
+ */
+public final class StateCodec {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(StateCodec.class);
+
+	private static final String LEGACY_ROOT_ELEMENT = "skadi_data";
+
+	private static final Map<String, Field> FIELDS = new LinkedHashMap<>();
+
+	static {
+		addList("channels", "channel", StateContainer::getChannels, StateContainer::setChannels);
+		addList("livestreamer_args", "arg", StateContainer::getLivestreamerArgs, (state, args) -> {
+			state.getLivestreamerArgs().clear();
+			state.getLivestreamerArgs().addAll(args);
+		});
+		addString("executable_chrome", StateContainer::getExecutableChrome, StateContainer::setExecutableChrome);
+		addString("executable_livestreamer", StateContainer::getExecutableLivestreamer, StateContainer::setExecutableLivestreamer);
+		addBoolean("display_notifications", StateContainer::isDisplayNotifications, StateContainer::setDisplayNotifications);
+		addBoolean("minimize_to_tray", StateContainer::isMinimizeToTray, StateContainer::setMinimizeToTray);
+		addBoolean("online_filter_active", StateContainer::isOnlineFilterActive, StateContainer::setOnlineFilterActive);
+		addBoolean("use_dark_theme", StateContainer::isUseDarkTheme, StateContainer::setUseDarkTheme);
+		addBoolean("show_grid", StateContainer::isShowGrid, StateContainer::setShowGrid);
+		addDouble("window_width", StateContainer::getWindowWidth, StateContainer::setWindowWidth);
+		addDouble("window_height", StateContainer::getWindowHeight, StateContainer::setWindowHeight);
+		addDouble("grid_scale", StateContainer::getGridScale, StateContainer::setGridScale);
+		addString("auth_token", StateContainer::getAuthToken, StateContainer::setAuthToken);
+		addBoolean("adaptive_polling", StateContainer::isAdaptivePolling, StateContainer::setAdaptivePolling);
+		addInt("poll_interval_live", StateContainer::getPollIntervalLive, StateContainer::setPollIntervalLive);
+		addInt("poll_interval_recent", StateContainer::getPollIntervalRecent, StateContainer::setPollIntervalRecent);
+		addInt("poll_interval_dormant", StateContainer::getPollIntervalDormant, StateContainer::setPollIntervalDormant);
+		addInt("dormant_after", StateContainer::getDormantAfter, StateContainer::setDormantAfter);
+		addBoolean("predictive_polling", StateContainer::isPredictivePolling, StateContainer::setPredictivePolling);
+		addBoolean("push_updates", StateContainer::isPushUpdates, StateContainer::setPushUpdates);
+		addDouble("api_requests_per_second", StateContainer::getApiRequestsPerSecond, StateContainer::setApiRequestsPerSecond);
+		addInt("api_burst", StateContainer::getApiBurst, StateContainer::setApiBurst);
+		addInt("viewer_history_hours", StateContainer::getViewerHistoryHours, StateContainer::setViewerHistoryHours);
+	}
+
+	private StateCodec() {
+	}
+
+	public static void write(final StateContainer state, final Writer writer) throws IOException {
+		final JsonWriter out = new JsonWriter(writer);
+		out.beginObject();
+		for (final Field field : FIELDS.values()) {
+			field.write(out, state);
+		}
+		out.endObject();
+		out.flush();
+	}
+
+	public static StateContainer read(final Reader reader) throws IOException {
+		final StateContainer state = new StateContainer();
+		final JsonReader in = new JsonReader(reader);
+		try {
+			in.beginObject();
+			while (in.hasNext()) {
+				final String name = in.nextName();
+				final Field field = FIELDS.get(name);
+				if (field == null || in.peek() == JsonToken.NULL) {
+					in.skipValue();
+				} else {
+					field.read(in, state);
+				}
+			}
+			in.endObject();
+		} catch (IllegalStateException | NumberFormatException | JsonParseException e) {
+			throw new IOException("malformed state", e);
+		}
+		return state;
+	}
+
+	/**
+	 * Reads the XML state file written by earlier versions.
+	 */
+	public static StateContainer readLegacyXml(final InputStream input) throws IOException {
+		final StateContainer state = new StateContainer();
+		try {
+			final XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+			final XMLStreamReader in = factory.createXMLStreamReader(input);
+			try {
+				in.nextTag();
+				in.require(XMLStreamConstants.START_ELEMENT, null, LEGACY_ROOT_ELEMENT);
+				while (in.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					final Field field = FIELDS.get(in.getLocalName());
+					if (field == null) {
+						skipElement(in);
+					} else {
+						field.readXml(in, state);
+					}
+				}
+			} finally {
+				in.close();
+			}
+		} catch (final XMLStreamException e) {
+			throw new IOException("malformed legacy state", e);
+		}
+		return state;
+	}
+
+	private static void skipElement(final XMLStreamReader in) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			final int event = in.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	private static void addString(final String name, final Function<StateContainer, String> getter, final BiConsumer<StateContainer, String> setter) {
+		FIELDS.put(name, new ScalarField(name) {
+			@Override
+			void write(final JsonWriter out, final StateContainer state) throws IOException {
+				final String value = getter.apply(state);
+				if (value != null) {
+					out.name(name).value(value);
+				}
+			}
+
+			@Override
+			void read(final JsonReader in, final StateContainer state) throws IOException {
+				setter.accept(state, in.nextString());
+			}
+
+			@Override
+			void parse(final String text, final StateContainer state) {
+				setter.accept(state, text);
+			}
+		});
+	}
+
+	private static void addBoolean(final String name, final Function<StateContainer, Boolean> getter, final BiConsumer<StateContainer, Boolean> setter) {
+		FIELDS.put(name, new ScalarField(name) {
+			@Override
+			void write(final JsonWriter out, final StateContainer state) throws IOException {
+				out.name(name).value(getter.apply(state));
+			}
+
+			@Override
+			void read(final JsonReader in, final StateContainer state) throws IOException {
+				setter.accept(state, in.nextBoolean());
+			}
+
+			@Override
+			void parse(final String text, final StateContainer state) {
+				setter.accept(state, Boolean.parseBoolean(text.trim()));
+			}
+		});
+	}
+
+	private static void addInt(final String name, final Function<StateContainer, Integer> getter, final BiConsumer<StateContainer, Integer> setter) {
+		FIELDS.put(name, new ScalarField(name) {
+			@Override
+			void write(final JsonWriter out, final StateContainer state) throws IOException {
+				out.name(name).value(getter.apply(state));
+			}
+
+			@Override
+			void read(final JsonReader in, final StateContainer state) throws IOException {
+				setter.accept(state, in.nextInt());
+			}
+
+			@Override
+			void parse(final String text, final StateContainer state) {
+				setter.accept(state, Integer.parseInt(text.trim()));
+			}
+		});
+	}
+
+	private static void addDouble(final String name, final Function<StateContainer, Double> getter, final BiConsumer<StateContainer, Double> setter) {
+		FIELDS.put(name, new ScalarField(name) {
+			@Override
+			void write(final JsonWriter out, final StateContainer state) throws IOException {
+				out.name(name).value(getter.apply(state));
+			}
+
+			@Override
+			void read(final JsonReader in, final StateContainer state) throws IOException {
+				setter.accept(state, in.nextDouble());
+			}
+
+			@Override
+			void parse(final String text, final StateContainer state) {
+				setter.accept(state, Double.parseDouble(text.trim()));
+			}
+		});
+	}
+
+	private static void addList(final String name, final String itemName, final Function<StateContainer, List<String>> getter, final BiConsumer<StateContainer, Collection<String>> setter) {
+		FIELDS.put(name, new Field() {
+			@Override
+			void write(final JsonWriter out, final StateContainer state) throws IOException {
+				out.name(name).beginArray();
+				for (final String value : getter.apply(state)) {
+					out.value(value);
+				}
+				out.endArray();
+			}
+
+			@Override
+			void read(final JsonReader in, final StateContainer state) throws IOException {
+				final List<String> values = new ArrayList<>();
+				in.beginArray();
+				while (in.hasNext()) {
+					values.add(in.nextString());
+				}
+				in.endArray();
+				setter.accept(state, values);
+			}
+
+			@Override
+			void readXml(final XMLStreamReader in, final StateContainer state) throws XMLStreamException {
+				final List<String> values = new ArrayList<>();
+				while (in.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					if (itemName.equals(in.getLocalName())) {
+						values.add(in.getElementText());
+					} else {
+						skipElement(in);
+					}
+				}
+				setter.accept(state, values);
+			}
+		});
+	}
+
+	private abstract static class Field {
+
+		abstract void write(JsonWriter out, StateContainer state) throws IOException;
+
+		abstract void read(JsonReader in, StateContainer state) throws IOException;
+
+		abstract void readXml(XMLStreamReader in, StateContainer state) throws XMLStreamException;
+	}
+
+	private abstract static class ScalarField extends Field {
+
+		private final String name;
+
+		ScalarField(final String name) {
+			this.name = name;
+		}
+
+		abstract void parse(String text, StateContainer state);
+
+		@Override
+		void readXml(final XMLStreamReader in, final StateContainer state) throws XMLStreamException {
+			final String text = in.getElementText();
+			try {
+				parse(text, state);
+			} catch (final NumberFormatException e) {
+				LOGGER.warn("ignoring invalid value '" + text + "' of " + name + " in legacy state");
+			}
+		}
+	}
+}
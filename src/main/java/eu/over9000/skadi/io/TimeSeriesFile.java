@@ -0,0 +1,537 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only, memory-mapped file of viewer samples for a single channel.
+ * <p>
+ * Samples are stored with second precision as zig-zag varint deltas to the previous sample, usually 2-4 bytes each.
+ * {@link #compact(long)} rolls samples older than two days up into minute buckets, minutes older than a week into hours
+ * and hours older than a year into days. The file is laid out as header, day, hour and minute buckets followed by the
+ * raw samples, so reading it from start to end yields the samples in order.
+ * <p>
+ * Compaction rewrites the file in place, the new content is written to a journal file first which is replayed on open
+ * if the rewrite was interrupted. Mapped files can not be replaced on every platform.
+ * <p>
+ * Mappings are released explicitly when the file is closed or grows, so it can be deleted on Windows. If the deletion
+ * still fails, a marker file is left and the content is discarded the next time the file is opened.
+ */
+public final class TimeSeriesFile implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TimeSeriesFile.class);
+
+	public enum Resolution {
+		MINUTE(TimeUnit.MINUTES.toSeconds(1), TimeUnit.DAYS.toSeconds(7), 16),
+		HOUR(TimeUnit.HOURS.toSeconds(1), TimeUnit.DAYS.toSeconds(365), 12),
+		DAY(TimeUnit.DAYS.toSeconds(1), Long.MAX_VALUE, 8);
+
+		private final long width;
+		private final long retention;
+		private final int countOffset;
+
+		Resolution(final long width, final long retention, final int countOffset) {
+			this.width = width;
+			this.retention = retention;
+			this.countOffset = countOffset;
+		}
+
+		public long getWidth() {
+			return width;
+		}
+	}
+
+	@FunctionalInterface
+	public interface SampleConsumer {
+		void accept(long time, long viewer);
+	}
+
+	public static final long RAW_RETENTION = TimeUnit.DAYS.toSeconds(2);
+
+	private static final int MAGIC = 0x534b5648;
+	private static final int VERSION = 1;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int RAW_COUNT_OFFSET = 20;
+	private static final int RAW_END_OFFSET = 24;
+	private static final int LAST_TIME_OFFSET = 28;
+	private static final int LAST_VIEWER_OFFSET = 36;
+	private static final int HEADER_SIZE = 64;
+
+	// start, min, max, sum, count
+	private static final int BUCKET_SIZE = 8 + 4 + 4 + 8 + 4;
+	// two varints of at most 10 bytes
+	private static final int MAX_RECORD_SIZE = 20;
+	private static final int INITIAL_SIZE = 4096;
+	private static final String DELETED_SUFFIX = ".deleted";
+
+	private final Path file;
+	private final FileChannel channel;
+	private MappedByteBuffer buffer;
+
+	private final Map<Resolution, Integer> bucketCounts = new EnumMap<>(Resolution.class);
+	private int rawCount;
+	private int rawEnd;
+	private long lastTime;
+	private long lastViewer;
+
+	private TimeSeriesFile(final Path file, final FileChannel channel, final boolean discard) throws IOException {
+		this.file = file;
+		this.channel = channel;
+
+		if (channel.size() < HEADER_SIZE) {
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_SIZE);
+			initialize();
+		} else {
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION || buffer.getInt(RAW_END_OFFSET) > buffer.capacity()) {
+				LOGGER.warn("discarding viewer history with unknown format in " + file);
+				initialize();
+			} else if (discard) {
+				initialize();
+			}
+		}
+		readHeader();
+	}
+
+	public static TimeSeriesFile open(final Path file) throws IOException {
+		Files.createDirectories(file.getParent());
+		final boolean discard = !recoverDeletion(file);
+		recoverCompaction(file);
+		final TimeSeriesFile timeSeriesFile = new TimeSeriesFile(file, FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE), discard);
+		Files.deleteIfExists(getSibling(file, DELETED_SUFFIX));
+		return timeSeriesFile;
+	}
+
+	/**
+	 * Deletes the file of a time series that is not open.
+	 */
+	public static void delete(final Path file) throws IOException {
+		Files.deleteIfExists(getSibling(file, ".tmp"));
+		Files.deleteIfExists(getSibling(file, ".compact"));
+		try {
+			Files.deleteIfExists(file);
+		} catch (final IOException e) {
+			LOGGER.warn("could not delete " + file + ", discarding it on next open", e);
+			Files.write(getSibling(file, DELETED_SUFFIX), new byte[0]);
+		}
+	}
+
+	/**
+	 * Finishes a deletion that failed before.
+	 *
+	 * @return false if the file was marked as deleted but still exists
+	 */
+	private static boolean recoverDeletion(final Path file) throws IOException {
+		final Path marker = getSibling(file, DELETED_SUFFIX);
+		if (!Files.exists(marker)) {
+			return true;
+		}
+		delete(file);
+		return !Files.exists(file);
+	}
+
+	private void initialize() {
+		for (int i = 0; i < HEADER_SIZE; i++) {
+			buffer.put(i, (byte) 0);
+		}
+		buffer.putInt(MAGIC_OFFSET, MAGIC);
+		buffer.putInt(VERSION_OFFSET, VERSION);
+		buffer.putInt(RAW_END_OFFSET, HEADER_SIZE);
+	}
+
+	private void readHeader() {
+		for (final Resolution resolution : Resolution.values()) {
+			bucketCounts.put(resolution, buffer.getInt(resolution.countOffset));
+		}
+		rawCount = buffer.getInt(RAW_COUNT_OFFSET);
+		rawEnd = buffer.getInt(RAW_END_OFFSET);
+		lastTime = buffer.getLong(LAST_TIME_OFFSET);
+		lastViewer = buffer.getLong(LAST_VIEWER_OFFSET);
+	}
+
+	/**
+	 * Appends a sample, this only writes to the mapped memory unless the file has to grow.
+	 */
+	public synchronized void append(final long time, final long viewer) throws IOException {
+		ensureOpen();
+		final long seconds = TimeUnit.MILLISECONDS.toSeconds(time);
+		ensureCapacity(rawEnd + MAX_RECORD_SIZE);
+
+		int position = writeVarLong(buffer, rawEnd, zigZag(seconds - lastTime));
+		position = writeVarLong(buffer, position, zigZag(viewer - lastViewer));
+
+		lastTime = seconds;
+		lastViewer = viewer;
+		rawCount++;
+		rawEnd = position;
+
+		// the end is written last, an interrupted append leaves the previous state intact
+		buffer.putLong(LAST_TIME_OFFSET, lastTime);
+		buffer.putLong(LAST_VIEWER_OFFSET, lastViewer);
+		buffer.putInt(RAW_COUNT_OFFSET, rawCount);
+		buffer.putInt(RAW_END_OFFSET, rawEnd);
+	}
+
+	/**
+	 * Reads all samples from the given time on in order. Rolled up buckets are reported as their average at their
+	 * center.
+	 */
+	public synchronized void read(final long from, final SampleConsumer consumer) {
+		if (buffer == null) {
+			throw new IllegalStateException(file + " is closed");
+		}
+		final long fromSeconds = TimeUnit.MILLISECONDS.toSeconds(from);
+
+		int position = HEADER_SIZE;
+		for (final Resolution resolution : new Resolution[]{Resolution.DAY, Resolution.HOUR, Resolution.MINUTE}) {
+			final int count = bucketCounts.get(resolution);
+			for (int i = 0; i < count; i++, position += BUCKET_SIZE) {
+				final long start = buffer.getLong(position);
+				if (start + resolution.width > fromSeconds) {
+					final long sum = buffer.getLong(position + 16);
+					final int bucketCount = buffer.getInt(position + 24);
+					consumer.accept(TimeUnit.SECONDS.toMillis(start + resolution.width / 2), sum / bucketCount);
+				}
+			}
+		}
+
+		final long[] state = new long[2];
+		for (int i = 0; i < rawCount; i++) {
+			position = readSample(position, state);
+			if (state[0] >= fromSeconds) {
+				consumer.accept(TimeUnit.SECONDS.toMillis(state[0]), state[1]);
+			}
+		}
+	}
+
+	/**
+	 * Rolls up samples and buckets that are older than the retention of their resolution.
+	 *
+	 * @return true if the file was rewritten
+	 */
+	public synchronized boolean compact(final long now) throws IOException {
+		ensureOpen();
+		final long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(now);
+		// cutoffs are aligned to the next resolution, so a bucket never spans two resolutions
+		final long rawCutoff = floor(nowSeconds - RAW_RETENTION, Resolution.MINUTE.width);
+		final long minuteCutoff = floor(nowSeconds - Resolution.MINUTE.retention, Resolution.HOUR.width);
+		final long hourCutoff = floor(nowSeconds - Resolution.HOUR.retention, Resolution.DAY.width);
+
+		final Map<Resolution, List<Bucket>> buckets = readBuckets();
+		final long[] times = new long[rawCount];
+		final long[] viewers = new long[rawCount];
+		final long[] state = new long[2];
+		int position = HEADER_SIZE + getBucketCount() * BUCKET_SIZE;
+		for (int i = 0; i < rawCount; i++) {
+			position = readSample(position, state);
+			times[i] = state[0];
+			viewers[i] = state[1];
+		}
+
+		if (!((rawCount > 0 && times[0] < rawCutoff) || isExpired(buckets.get(Resolution.MINUTE), minuteCutoff) || isExpired(buckets.get(Resolution.HOUR), hourCutoff))) {
+			return false;
+		}
+
+		int rawStart = 0;
+		while (rawStart < rawCount && times[rawStart] < rawCutoff) {
+			addToBucket(buckets.get(Resolution.MINUTE), floor(times[rawStart], Resolution.MINUTE.width), viewers[rawStart], viewers[rawStart], viewers[rawStart], 1);
+			rawStart++;
+		}
+		rollUp(buckets.get(Resolution.MINUTE), buckets.get(Resolution.HOUR), Resolution.HOUR, minuteCutoff);
+		rollUp(buckets.get(Resolution.HOUR), buckets.get(Resolution.DAY), Resolution.DAY, hourCutoff);
+
+		final ByteBuffer image = buildImage(buckets, times, viewers, rawStart);
+		writeImage(image);
+		LOGGER.debug("compacted " + file.getFileName() + ", rolled up " + rawStart + " samples");
+		return true;
+	}
+
+	private Map<Resolution, List<Bucket>> readBuckets() {
+		final Map<Resolution, List<Bucket>> buckets = new EnumMap<>(Resolution.class);
+		int position = HEADER_SIZE;
+		for (final Resolution resolution : new Resolution[]{Resolution.DAY, Resolution.HOUR, Resolution.MINUTE}) {
+			final int count = bucketCounts.get(resolution);
+			final List<Bucket> list = new ArrayList<>(count);
+			for (int i = 0; i < count; i++, position += BUCKET_SIZE) {
+				list.add(new Bucket(buffer.getLong(position), buffer.getInt(position + 8), buffer.getInt(position + 12), buffer.getLong(position + 16), buffer.getInt(position + 24)));
+			}
+			buckets.put(resolution, list);
+		}
+		return buckets;
+	}
+
+	private static boolean isExpired(final List<Bucket> buckets, final long cutoff) {
+		return !buckets.isEmpty() && buckets.get(0).start < cutoff;
+	}
+
+	private static void rollUp(final List<Bucket> source, final List<Bucket> target, final Resolution targetResolution, final long cutoff) {
+		int expired = 0;
+		while (expired < source.size() && source.get(expired).start < cutoff) {
+			final Bucket bucket = source.get(expired);
+			addToBucket(target, floor(bucket.start, targetResolution.width), bucket.min, bucket.max, bucket.sum, bucket.count);
+			expired++;
+		}
+		source.subList(0, expired).clear();
+	}
+
+	private static void addToBucket(final List<Bucket> buckets, final long start, final long min, final long max, final long sum, final int count) {
+		final Bucket last = buckets.isEmpty() ? null : buckets.get(buckets.size() - 1);
+		if (last != null && last.start == start) {
+			last.min = (int) Math.min(last.min, min);
+			last.max = (int) Math.max(last.max, max);
+			last.sum += sum;
+			last.count += count;
+		} else {
+			buckets.add(new Bucket(start, (int) min, (int) max, sum, count));
+		}
+	}
+
+	private static ByteBuffer buildImage(final Map<Resolution, List<Bucket>> buckets, final long[] times, final long[] viewers, final int rawStart) {
+		final int bucketCount = buckets.values().stream().mapToInt(List::size).sum();
+		final ByteBuffer image = ByteBuffer.allocate(HEADER_SIZE + bucketCount * BUCKET_SIZE + (times.length - rawStart) * MAX_RECORD_SIZE);
+
+		image.putInt(MAGIC_OFFSET, MAGIC);
+		image.putInt(VERSION_OFFSET, VERSION);
+		int position = HEADER_SIZE;
+		for (final Resolution resolution : new Resolution[]{Resolution.DAY, Resolution.HOUR, Resolution.MINUTE}) {
+			final List<Bucket> list = buckets.get(resolution);
+			image.putInt(resolution.countOffset, list.size());
+			for (final Bucket bucket : list) {
+				image.putLong(position, bucket.start);
+				image.putInt(position + 8, bucket.min);
+				image.putInt(position + 12, bucket.max);
+				image.putLong(position + 16, bucket.sum);
+				image.putInt(position + 24, bucket.count);
+				position += BUCKET_SIZE;
+			}
+		}
+
+		long previousTime = 0;
+		long previousViewer = 0;
+		for (int i = rawStart; i < times.length; i++) {
+			position = writeVarLong(image, position, zigZag(times[i] - previousTime));
+			position = writeVarLong(image, position, zigZag(viewers[i] - previousViewer));
+			previousTime = times[i];
+			previousViewer = viewers[i];
+		}
+
+		image.putInt(RAW_COUNT_OFFSET, times.length - rawStart);
+		image.putInt(RAW_END_OFFSET, position);
+		image.putLong(LAST_TIME_OFFSET, previousTime);
+		image.putLong(LAST_VIEWER_OFFSET, previousViewer);
+		image.limit(position);
+		return image;
+	}
+
+	private void writeImage(final ByteBuffer image) throws IOException {
+		final Path tempFile = getSibling(file, ".tmp");
+		final Path journalFile = getSibling(file, ".compact");
+
+		try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			out.write(image.duplicate());
+			out.force(true);
+		}
+		Files.move(tempFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		ensureCapacity(image.limit());
+		final ByteBuffer target = buffer.duplicate();
+		target.position(0);
+		target.put(image.duplicate());
+		buffer.force();
+		Files.delete(journalFile);
+
+		readHeader();
+	}
+
+	private static void recoverCompaction(final Path file) throws IOException {
+		Files.deleteIfExists(getSibling(file, ".tmp"));
+
+		final Path journalFile = getSibling(file, ".compact");
+		if (Files.exists(journalFile)) {
+			LOGGER.warn("finishing interrupted compaction of " + file);
+			try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				out.write(ByteBuffer.wrap(Files.readAllBytes(journalFile)), 0);
+				out.force(true);
+			}
+			Files.delete(journalFile);
+		}
+	}
+
+	private static Path getSibling(final Path file, final String suffix) {
+		return file.resolveSibling(file.getFileName() + suffix);
+	}
+
+	private void ensureCapacity(final int size) throws IOException {
+		if (size > buffer.capacity()) {
+			final MappedByteBuffer previous = buffer;
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, buffer.capacity() * 2L));
+			unmap(previous);
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (buffer == null) {
+			throw new IOException(file + " is closed");
+		}
+	}
+
+	/**
+	 * Releases the mapping right away instead of when the buffer is garbage collected. The buffer must not be used
+	 * afterwards.
+	 */
+	private static void unmap(final MappedByteBuffer mapped) {
+		try {
+			try {
+				// java 9 and later
+				final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), mapped);
+			} catch (final NoSuchMethodException e) {
+				final Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				final Object cleaner = cleanerMethod.invoke(mapped);
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			LOGGER.debug("could not unmap viewer history buffer, it is released on garbage collection", e);
+		}
+	}
+
+	/**
+	 * Reads the sample at the position, state holds the previous sample and receives the decoded one.
+	 */
+	private int readSample(int position, final long[] state) {
+		for (int field = 0; field < 2; field++) {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buffer.get(position++);
+				value |= (long) (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			state[field] += (value >>> 1) ^ -(value & 1);
+		}
+		return position;
+	}
+
+	private static int writeVarLong(final ByteBuffer target, int position, long value) {
+		while ((value & ~0x7fL) != 0) {
+			target.put(position++, (byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		target.put(position++, (byte) value);
+		return position;
+	}
+
+	private static long zigZag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long floor(final long seconds, final long width) {
+		return seconds - Math.floorMod(seconds, width);
+	}
+
+	public synchronized int getRawCount() {
+		return rawCount;
+	}
+
+	public synchronized int getBucketCount(final Resolution resolution) {
+		return bucketCounts.get(resolution);
+	}
+
+	private int getBucketCount() {
+		return bucketCounts.values().stream().mapToInt(Integer::intValue).sum();
+	}
+
+	/**
+	 * @return the number of bytes in use
+	 */
+	public synchronized int getSize() {
+		return rawEnd;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (buffer == null) {
+			return;
+		}
+		buffer.force();
+		release();
+	}
+
+	/**
+	 * Closes the file and deletes it.
+	 */
+	public synchronized void delete() throws IOException {
+		if (buffer != null) {
+			release();
+		}
+		delete(file);
+	}
+
+	private void release() throws IOException {
+		final MappedByteBuffer mapped = buffer;
+		buffer = null;
+		channel.close();
+		unmap(mapped);
+	}
+
+	private static final class Bucket {
+		private final long start;
+		private int min;
+		private int max;
+		private long sum;
+		private int count;
+
+		private Bucket(final long start, final int min, final int max, final long sum, final int count) {
+			this.start = start;
+			this.min = min;
+			this.max = max;
+			this.sum = sum;
+			this.count = count;
+		}
+	}
+}
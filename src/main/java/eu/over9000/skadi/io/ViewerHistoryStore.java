@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.io;
+
+import eu.over9000.skadi.model.Channel;
+import eu.over9000.skadi.model.ViewerHistory;
+import eu.over9000.skadi.util.ExecutorUtil;
+import eu.over9000.skadi.util.Workload;
+import javafx.beans.InvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persists the viewer history of every channel into a {@link TimeSeriesFile} per channel. Every sample added to the
+ * {@link ViewerHistory} of a registered channel is queued and appended to its file in the background. The stored
+ * history is only read when it is shown, see {@link #loadHistory(Channel)}, so registering is cheap. Only the {@link
+ * #MAX_OPEN_FILES} most recently used files are kept open. The files are compacted in the background once an hour.
+ */
+public class ViewerHistoryStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ViewerHistoryStore.class);
+
+	static final int MAX_OPEN_FILES = 64;
+
+	/**
+	 * the range of stored history shown in the chart, older samples are read from the rollups of the file
+	 */
+	public static final long CHART_RANGE = TimeUnit.DAYS.toMillis(7);
+	// two days of raw samples at a poll every 30s and five days of minute buckets
+	private static final int CHART_CAPACITY = 16384;
+
+	private static final long COMPACTION_INTERVAL = TimeUnit.HOURS.toMillis(1);
+	private static final long COMPACTION_DELAY = TimeUnit.MINUTES.toMillis(1);
+	private static final String FILE_EXTENSION = ".vh";
+
+	private final Path directory;
+	private final Executor writeExecutor;
+	private final Map<Channel, InvalidationListener> listeners = new ConcurrentHashMap<>();
+	private final Queue<Sample> pendingSamples = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	// least recently used first, guarded by itself
+	private final LinkedHashMap<Channel, TimeSeriesFile> openFiles = new LinkedHashMap<>(16, 0.75f, true);
+	private ScheduledFuture<?> compactionFuture;
+
+	public ViewerHistoryStore(final Path directory) {
+		this(directory, ExecutorUtil.getExecutor(Workload.GENERAL));
+	}
+
+	ViewerHistoryStore(final Path directory, final Executor writeExecutor) {
+		this.directory = directory;
+		this.writeExecutor = writeExecutor;
+	}
+
+	public synchronized void start() {
+		if (compactionFuture == null) {
+			compactionFuture = ExecutorUtil.getSchedulerService().scheduleWithFixedDelay(this::scheduleCompaction, COMPACTION_DELAY, COMPACTION_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public synchronized void stop() {
+		if (compactionFuture != null) {
+			compactionFuture.cancel(false);
+			compactionFuture = null;
+		}
+		flush();
+		listeners.forEach((channel, listener) -> channel.getViewerHistory().removeListener(listener));
+		listeners.clear();
+		synchronized (openFiles) {
+			openFiles.forEach(this::closeQuietly);
+			openFiles.clear();
+		}
+	}
+
+	/**
+	 * Records the samples added to the channel's history from now on.
+	 */
+	public void register(final Channel channel) {
+		if (listeners.containsKey(channel)) {
+			return;
+		}
+
+		final ViewerHistory history = channel.getViewerHistory();
+		final InvalidationListener listener = observable -> {
+			final int last = history.size() - 1;
+			pendingSamples.add(new Sample(channel, history.getTime(last), history.getViewer(last)));
+			scheduleFlush();
+		};
+		history.addListener(listener);
+		listeners.put(channel, listener);
+	}
+
+	/**
+	 * Stops recording the channel and deletes its stored history.
+	 */
+	public void unregister(final Channel channel) {
+		final InvalidationListener listener = listeners.remove(channel);
+		if (listener == null) {
+			return;
+		}
+		channel.getViewerHistory().removeListener(listener);
+
+		synchronized (openFiles) {
+			final TimeSeriesFile file = openFiles.remove(channel);
+			try {
+				if (file != null) {
+					file.delete();
+				} else {
+					TimeSeriesFile.delete(getFile(channel));
+				}
+			} catch (final IOException e) {
+				LOGGER.error("exception deleting viewer history of " + channel.getName(), e);
+			}
+		}
+	}
+
+	/**
+	 * Reads the stored samples of the channel within the last {@link #CHART_RANGE} in the background, samples older
+	 * than two days come from the minute and hour rollups. Samples that were not written yet are missing, they are
+	 * still in the channel's history.
+	 *
+	 * @return a future completing with a new history, empty if the channel is not registered or its file can not be read
+	 */
+	public CompletableFuture<ViewerHistory> loadHistory(final Channel channel) {
+		try {
+			return CompletableFuture.supplyAsync(() -> readHistory(channel), writeExecutor);
+		} catch (final RejectedExecutionException e) {
+			LOGGER.error("exception loading viewer history of " + channel.getName(), e);
+			return CompletableFuture.completedFuture(new ViewerHistory(CHART_CAPACITY, CHART_RANGE));
+		}
+	}
+
+	ViewerHistory readHistory(final Channel channel) {
+		final ViewerHistory history = new ViewerHistory(CHART_CAPACITY, CHART_RANGE);
+		synchronized (openFiles) {
+			if (!listeners.containsKey(channel)) {
+				return history;
+			}
+			try {
+				getOpenFile(channel).read(System.currentTimeMillis() - CHART_RANGE, history::add);
+			} catch (final IOException e) {
+				LOGGER.error("exception reading viewer history of " + channel.getName(), e);
+			}
+		}
+		return history;
+	}
+
+	private void scheduleFlush() {
+		if (flushScheduled.compareAndSet(false, true)) {
+			try {
+				writeExecutor.execute(this::flush);
+			} catch (final RejectedExecutionException e) {
+				// retried with the next sample
+				flushScheduled.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Appends the queued samples, grouped by channel so every file is looked up once.
+	 */
+	void flush() {
+		flushScheduled.set(false);
+
+		final Map<Channel, List<Sample>> samples = new LinkedHashMap<>();
+		Sample sample;
+		while ((sample = pendingSamples.poll()) != null) {
+			samples.computeIfAbsent(sample.channel, channel -> new ArrayList<>()).add(sample);
+		}
+
+		samples.forEach((channel, channelSamples) -> {
+			synchronized (openFiles) {
+				// samples of channels unregistered in the meantime are dropped
+				if (!listeners.containsKey(channel)) {
+					return;
+				}
+				try {
+					final TimeSeriesFile file = getOpenFile(channel);
+					for (final Sample channelSample : channelSamples) {
+						file.append(channelSample.time, channelSample.viewer);
+					}
+				} catch (final IOException e) {
+					LOGGER.error("exception writing viewer history of " + channel.getName(), e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Runs on the shared scheduler thread, the compaction itself is handed to the write executor.
+	 */
+	private void scheduleCompaction() {
+		try {
+			writeExecutor.execute(this::compact);
+		} catch (final RejectedExecutionException e) {
+			LOGGER.warn("viewer history compaction skipped, retried in " + TimeUnit.MILLISECONDS.toMinutes(COMPACTION_INTERVAL) + " minutes");
+		}
+	}
+
+	void compact() {
+		final long now = System.currentTimeMillis();
+		int compacted = 0;
+		for (final Channel channel : new ArrayList<>(listeners.keySet())) {
+			synchronized (openFiles) {
+				if (!listeners.containsKey(channel)) {
+					continue;
+				}
+				try {
+					if (getOpenFile(channel).compact(now)) {
+						compacted++;
+					}
+				} catch (final IOException e) {
+					LOGGER.error("exception compacting viewer history of " + channel.getName(), e);
+				}
+			}
+		}
+		LOGGER.debug("compacted " + compacted + " of " + listeners.size() + " viewer histories");
+	}
+
+	int getOpenFileCount() {
+		synchronized (openFiles) {
+			return openFiles.size();
+		}
+	}
+
+	/**
+	 * Returns the open file of the channel, opening it and closing the least recently used one if necessary. Must be
+	 * called while holding the lock of {@link #openFiles}.
+	 */
+	private TimeSeriesFile getOpenFile(final Channel channel) throws IOException {
+		TimeSeriesFile file = openFiles.get(channel);
+		if (file == null) {
+			if (openFiles.size() >= MAX_OPEN_FILES) {
+				final Map.Entry<Channel, TimeSeriesFile> eldest = openFiles.entrySet().iterator().next();
+				openFiles.remove(eldest.getKey());
+				closeQuietly(eldest.getKey(), eldest.getValue());
+			}
+			file = TimeSeriesFile.open(getFile(channel));
+			openFiles.put(channel, file);
+		}
+		return file;
+	}
+
+	private void closeQuietly(final Channel channel, final TimeSeriesFile file) {
+		try {
+			file.close();
+		} catch (final IOException e) {
+			LOGGER.error("exception closing viewer history of " + channel.getName(), e);
+		}
+	}
+
+	private Path getFile(final Channel channel) {
+		return directory.resolve(channel.getKey().getName() + FILE_EXTENSION);
+	}
+
+	private static final class Sample {
+		private final Channel channel;
+		private final long time;
+		private final long viewer;
+
+		private Sample(final Channel channel, final long time, final long viewer) {
+			this.channel = channel;
+			this.time = time;
+			this.viewer = viewer;
+		}
+	}
+}
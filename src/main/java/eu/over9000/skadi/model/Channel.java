@@ -26,61 +26,134 @@ import eu.over9000.skadi.remote.data.ChannelMetadata;
 import eu.over9000.skadi.util.NotificationUtil;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.*;
-import javafx.collections.FXCollections;
-import javafx.scene.chart.XYChart;
 import javafx.scene.image.Image;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.EnumSet;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.stream.IntStream;
 
+/**
+ * A followed channel. The attributes shown in the channel list are JavaFX properties, the ones that are only needed by
+ * the detail pane are kept in plain fields and get a property on first request, e.g. when the detail pane binds to
+ * them. Their accessors are synchronized as they are bound and written from different threads.
+ */
 public class Channel {
 	private static final String DEFAULT_CHANNEL_LOGO = "http://static-cdn.jtvnw.net/jtv_user_pictures/xarth/404_user_150x150.png";
+	private final ChannelKey key;
 	private final StringProperty name;
 	private final StringProperty title;
 	private final LongProperty viewer;
 	private final LongProperty uptime;
 	private final ObjectProperty<Boolean> online;
-	private final ObjectProperty<Boolean> wasOnline;
 	private final StringProperty game;
-	private final ListProperty<XYChart.Data<Number, Number>> viewerHistory;
-	private final LongProperty viewerHistoryAverage;
-	private final StringProperty logoURL;
-	private final ObjectProperty<LocalTime> lastUpdated;
-	private final LongProperty followers;
-	private final LongProperty views;
-	private final ObjectProperty<Boolean> partner;
-	private final ObjectProperty<Image> preview;
+	private final ViewerHistory viewerHistory;
+
+	// cold attributes, the property fields are null until requested
+	private Boolean wasOnline;
+	private String logoURL = DEFAULT_CHANNEL_LOGO;
+	private long lastUpdated = System.currentTimeMillis();
+	private long followers;
+	private long views;
+	private Boolean partner;
+	private Image preview;
+	private boolean stale;
+	private ObjectProperty<Boolean> wasOnlineProperty;
+	private StringProperty logoURLProperty;
+	private ObjectProperty<LocalTime> lastUpdatedProperty;
+	private LongProperty followersProperty;
+	private LongProperty viewsProperty;
+	private ObjectProperty<Boolean> partnerProperty;
+	private ObjectProperty<Image> previewProperty;
+	private BooleanProperty staleProperty;
+	private LongProperty viewerHistoryAverage;
+	private LongProperty viewerHistoryMovingAverage;
+	private LongProperty viewerHistoryMin;
+	private LongProperty viewerHistoryMax;
+	private LongProperty viewerHistoryPeakTime;
 
 	public Channel(final String name) {
+		key = ChannelKey.of(name);
 		this.name = new SimpleStringProperty(name);
 		title = new SimpleStringProperty("-");
 		viewer = new SimpleLongProperty(0);
 		uptime = new SimpleLongProperty(0);
 		online = new SimpleObjectProperty<>();
-		wasOnline = new SimpleObjectProperty<>();
 		game = new SimpleStringProperty("-");
-		viewerHistory = new SimpleListProperty<>(FXCollections.observableArrayList());
-		viewerHistoryAverage = new SimpleLongProperty();
-		viewerHistoryAverage.bind(Bindings.createIntegerBinding(buildAvgFunc(), viewerHistory));
-		logoURL = new SimpleStringProperty(DEFAULT_CHANNEL_LOGO);
-		lastUpdated = new SimpleObjectProperty<>(LocalTime.now());
-		followers = new SimpleLongProperty();
-		views = new SimpleLongProperty();
-		partner = new SimpleObjectProperty<>();
-		preview = new SimpleObjectProperty<>();
-	}
-
-	public void updateFrom(final ChannelMetadata u) {
+		viewerHistory = new ViewerHistory();
+	}
+
+	/**
+	 * Applies the given metadata, properties are only written if their value actually changed.
+	 *
+	 * @return the fields that changed
+	 */
+	public Set<ChannelField> updateFrom(final ChannelMetadata u) {
+		final Set<ChannelField> changed = EnumSet.noneOf(ChannelField.class);
+
+		if (u.hasTitle() && update(title, u.getTitle())) {
+			changed.add(ChannelField.TITLE);
+		}
+		if (u.hasOnline() && updateOnline(u.getOnline())) {
+			changed.add(ChannelField.ONLINE);
+		}
+		if (u.hasViewer() && updateViewer(u.getViewer())) {
+			changed.add(ChannelField.VIEWER);
+		}
+		if (u.hasGame() && update(game, u.getGame())) {
+			changed.add(ChannelField.GAME);
+		}
+		if (u.hasUptime() && update(uptime, u.getUptime())) {
+			changed.add(ChannelField.UPTIME);
+		}
+		if (u.hasLogoURL() && !Objects.equals(getLogoURL(), u.getLogoURL())) {
+			setLogoURL(u.getLogoURL());
+			changed.add(ChannelField.LOGO_URL);
+		}
+		if (u.hasFollowers() && getFollowers() != u.getFollowers()) {
+			setFollowers(u.getFollowers());
+			changed.add(ChannelField.FOLLOWERS);
+		}
+		if (u.hasViews() && getViews() != u.getViews()) {
+			setViews(u.getViews());
+			changed.add(ChannelField.VIEWS);
+		}
+		if (u.hasPartner() && !Objects.equals(getPartner(), u.getPartner())) {
+			setPartner(u.getPartner());
+			changed.add(ChannelField.PARTNER);
+		}
+
+		setLastUpdated(System.currentTimeMillis());
+		if (!u.isPartial()) {
+			setStale(false);
+		}
+
+		if (cameOnline()) {
+			NotificationUtil.showOnlineNotification(this);
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Restores the last known state, e.g. from a snapshot written at the previous shutdown. The channel is marked as
+	 * stale until the next complete update, no history sample or notification is created.
+	 *
+	 * @param updated the time the metadata was retrieved
+	 */
+	public void restoreFrom(final ChannelMetadata u, final long updated) {
 		if (u.hasTitle()) {
 			setTitle(u.getTitle());
 		}
 		if (u.hasOnline()) {
-			updateOnline(u.getOnline());
+			setOnline(u.getOnline());
 		}
 		if (u.hasViewer()) {
-			updateViewer(u.getViewer());
+			setViewer(u.getViewer());
 		}
 		if (u.hasGame()) {
 			setGame(u.getGame());
@@ -91,42 +164,47 @@ public class Channel {
 		if (u.hasLogoURL()) {
 			setLogoURL(u.getLogoURL());
 		}
-		if (u.hasFollowers()) {
-			setFollowers(u.getFollowers());
-		}
-		if (u.hasViews()) {
-			setViews(u.getViews());
-		}
-		if (u.hasPartner()) {
-			setPartner(u.getPartner());
-		}
+		setLastUpdated(updated);
+		setStale(true);
+	}
 
-		setLastUpdated(LocalTime.now());
+	private static <T> boolean update(final Property<T> property, final T value) {
+		if (Objects.equals(property.getValue(), value)) {
+			return false;
+		}
+		property.setValue(value);
+		return true;
+	}
 
-		if (cameOnline()) {
-			NotificationUtil.showOnlineNotification(this);
+	private static boolean update(final LongProperty property, final long value) {
+		if (property.get() == value) {
+			return false;
 		}
+		property.set(value);
+		return true;
 	}
 
-	private boolean cameOnline() {
+	/**
+	 * @return true if the last update switched the channel from offline to online, the online state restored from a
+	 * snapshot does not count as offline
+	 */
+	public boolean cameOnline() {
 		final boolean wasNotOnline = (getWasOnline() != null) && !getWasOnline();
 		final boolean isNowOnline = (isOnline() != null) && isOnline();
 
 		return wasNotOnline && isNowOnline;
 	}
 
-	private Callable<Integer> buildAvgFunc() {
-		return () -> viewerHistory.isEmpty() ? 0 : (int) viewerHistory.stream().flatMapToInt(data -> IntStream.of(data.getYValue().intValue())).average().getAsDouble();
-	}
-
-	private void updateViewer(final long viewer) {
-		setViewer(viewer);
-		getViewerHistory().add(new XYChart.Data<>(System.currentTimeMillis(), viewer));
+	private boolean updateViewer(final long viewer) {
+		final boolean changed = update(this.viewer, viewer);
+		viewerHistory.add(System.currentTimeMillis(), viewer);
+		return changed;
 	}
 
-	private void updateOnline(final Boolean online) {
-		wasOnline.set(isOnline());
-		setOnline(online);
+	private boolean updateOnline(final Boolean online) {
+		// the restored state may be long outdated, a transition from it is no go-live
+		setWasOnline(isStale() ? null : isOnline());
+		return update(this.online, online);
 	}
 
 	@Override
@@ -146,13 +224,16 @@ public class Channel {
 		if (o == null || getClass() != o.getClass()) {
 			return false;
 		}
-		final Channel channel = (Channel) o;
-		return Objects.equals(name, channel.name);
+		return key.equals(((Channel) o).key);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(name);
+		return key.hashCode();
+	}
+
+	public final ChannelKey getKey() {
+		return key;
 	}
 
 	public final StringProperty nameProperty() {
@@ -223,99 +304,234 @@ public class Channel {
 		gameProperty().set(game);
 	}
 
-	public final ListProperty<XYChart.Data<Number, Number>> viewerHistoryProperty() {
+	public final ViewerHistory getViewerHistory() {
 		return viewerHistory;
 	}
 
-	public final javafx.collections.ObservableList<javafx.scene.chart.XYChart.Data<Number, Number>> getViewerHistory() {
-		return viewerHistoryProperty().get();
-	}
-
-	public final LongProperty viewerHistoryAverageProperty() {
+	public final synchronized LongProperty viewerHistoryAverageProperty() {
+		if (viewerHistoryAverage == null) {
+			viewerHistoryAverage = bindToHistory(viewerHistory::getAverage);
+		}
 		return viewerHistoryAverage;
 	}
 
 	public final long getViewerHistoryAverage() {
-		return viewerHistoryAverageProperty().get();
+		return viewerHistory.getAverage();
 	}
 
-	public final StringProperty logoURLProperty() {
-		return logoURL;
+	public final synchronized LongProperty viewerHistoryMovingAverageProperty() {
+		if (viewerHistoryMovingAverage == null) {
+			viewerHistoryMovingAverage = bindToHistory(viewerHistory::getMovingAverage);
+		}
+		return viewerHistoryMovingAverage;
 	}
 
-	public final String getLogoURL() {
-		return logoURLProperty().get();
+	public final long getViewerHistoryMovingAverage() {
+		return viewerHistory.getMovingAverage();
 	}
 
-	public final void setLogoURL(final String logoURL) {
-		logoURLProperty().set(logoURL);
+	public final synchronized LongProperty viewerHistoryMinProperty() {
+		if (viewerHistoryMin == null) {
+			viewerHistoryMin = bindToHistory(viewerHistory::getMin);
+		}
+		return viewerHistoryMin;
 	}
 
-	public final ObjectProperty<LocalTime> lastUpdatedProperty() {
+	public final long getViewerHistoryMin() {
+		return viewerHistory.getMin();
+	}
+
+	public final synchronized LongProperty viewerHistoryMaxProperty() {
+		if (viewerHistoryMax == null) {
+			viewerHistoryMax = bindToHistory(viewerHistory::getMax);
+		}
+		return viewerHistoryMax;
+	}
+
+	public final long getViewerHistoryMax() {
+		return viewerHistory.getMax();
+	}
+
+	public final synchronized LongProperty viewerHistoryPeakTimeProperty() {
+		if (viewerHistoryPeakTime == null) {
+			viewerHistoryPeakTime = bindToHistory(viewerHistory::getPeakTime);
+		}
+		return viewerHistoryPeakTime;
+	}
+
+	public final long getViewerHistoryPeakTime() {
+		return viewerHistory.getPeakTime();
+	}
+
+	// the statistics are maintained by the history itself, the bindings are only evaluated when read
+	private LongProperty bindToHistory(final Callable<Long> statistic) {
+		final LongProperty property = new SimpleLongProperty(this, null);
+		property.bind(Bindings.createLongBinding(statistic, viewerHistory));
+		return property;
+	}
+
+	public final synchronized StringProperty logoURLProperty() {
+		if (logoURLProperty == null) {
+			logoURLProperty = new SimpleStringProperty(this, "logoURL", logoURL);
+		}
+		return logoURLProperty;
+	}
+
+	public final synchronized String getLogoURL() {
+		return logoURLProperty == null ? logoURL : logoURLProperty.get();
+	}
+
+	public final synchronized void setLogoURL(final String logoURL) {
+		if (logoURLProperty == null) {
+			this.logoURL = logoURL;
+		} else {
+			logoURLProperty.set(logoURL);
+		}
+	}
+
+	public final synchronized ObjectProperty<LocalTime> lastUpdatedProperty() {
+		if (lastUpdatedProperty == null) {
+			lastUpdatedProperty = new SimpleObjectProperty<>(this, "lastUpdated", getLastUpdated());
+		}
+		return lastUpdatedProperty;
+	}
+
+	public final synchronized LocalTime getLastUpdated() {
+		if (lastUpdatedProperty == null) {
+			return toLocalTime(lastUpdated);
+		}
+		return lastUpdatedProperty.get();
+	}
+
+	public final synchronized long getLastUpdatedMillis() {
 		return lastUpdated;
 	}
 
-	public final LocalTime getLastUpdated() {
-		return lastUpdatedProperty().get();
+	private synchronized void setLastUpdated(final long lastUpdated) {
+		this.lastUpdated = lastUpdated;
+		if (lastUpdatedProperty != null) {
+			lastUpdatedProperty.set(toLocalTime(lastUpdated));
+		}
+	}
+
+	private static LocalTime toLocalTime(final long millis) {
+		return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).toLocalTime();
+	}
+
+	/**
+	 * A channel is stale while it shows restored metadata that was not refreshed yet.
+	 */
+	public final synchronized BooleanProperty staleProperty() {
+		if (staleProperty == null) {
+			staleProperty = new SimpleBooleanProperty(this, "stale", stale);
+		}
+		return staleProperty;
+	}
+
+	public final synchronized boolean isStale() {
+		return staleProperty == null ? stale : staleProperty.get();
+	}
+
+	private synchronized void setStale(final boolean stale) {
+		if (staleProperty == null) {
+			this.stale = stale;
+		} else {
+			staleProperty.set(stale);
+		}
 	}
 
-	public final void setLastUpdated(final LocalTime lastUpdated) {
-		lastUpdatedProperty().set(lastUpdated);
+	public final synchronized ObjectProperty<Boolean> wasOnlineProperty() {
+		if (wasOnlineProperty == null) {
+			wasOnlineProperty = new SimpleObjectProperty<>(this, "wasOnline", wasOnline);
+		}
+		return wasOnlineProperty;
 	}
 
-	public final ObjectProperty<Boolean> wasOnlineProperty() {
-		return wasOnline;
+	public final synchronized Boolean getWasOnline() {
+		return wasOnlineProperty == null ? wasOnline : wasOnlineProperty.get();
 	}
 
-	public final Boolean getWasOnline() {
-		return wasOnlineProperty().get();
+	private synchronized void setWasOnline(final Boolean wasOnline) {
+		if (wasOnlineProperty == null) {
+			this.wasOnline = wasOnline;
+		} else {
+			wasOnlineProperty.set(wasOnline);
+		}
 	}
 
-	public final LongProperty followersProperty() {
-		return followers;
+	public final synchronized LongProperty followersProperty() {
+		if (followersProperty == null) {
+			followersProperty = new SimpleLongProperty(this, "followers", followers);
+		}
+		return followersProperty;
 	}
 
-	public final long getFollowers() {
-		return followersProperty().get();
+	public final synchronized long getFollowers() {
+		return followersProperty == null ? followers : followersProperty.get();
 	}
 
-	public final void setFollowers(final long followers) {
-		followersProperty().set(followers);
+	public final synchronized void setFollowers(final long followers) {
+		if (followersProperty == null) {
+			this.followers = followers;
+		} else {
+			followersProperty.set(followers);
+		}
 	}
 
-	public final LongProperty viewsProperty() {
-		return views;
+	public final synchronized LongProperty viewsProperty() {
+		if (viewsProperty == null) {
+			viewsProperty = new SimpleLongProperty(this, "views", views);
+		}
+		return viewsProperty;
 	}
 
-	public final long getViews() {
-		return viewsProperty().get();
+	public final synchronized long getViews() {
+		return viewsProperty == null ? views : viewsProperty.get();
 	}
 
-	public final void setViews(final long views) {
-		viewsProperty().set(views);
+	public final synchronized void setViews(final long views) {
+		if (viewsProperty == null) {
+			this.views = views;
+		} else {
+			viewsProperty.set(views);
+		}
 	}
 
-	public final ObjectProperty<Boolean> partnerProperty() {
-		return partner;
+	public final synchronized ObjectProperty<Boolean> partnerProperty() {
+		if (partnerProperty == null) {
+			partnerProperty = new SimpleObjectProperty<>(this, "partner", partner);
+		}
+		return partnerProperty;
 	}
 
-	public final Boolean getPartner() {
-		return partnerProperty().get();
+	public final synchronized Boolean getPartner() {
+		return partnerProperty == null ? partner : partnerProperty.get();
 	}
 
-	public final void setPartner(final Boolean partner) {
-		partnerProperty().set(partner);
+	public final synchronized void setPartner(final Boolean partner) {
+		if (partnerProperty == null) {
+			this.partner = partner;
+		} else {
+			partnerProperty.set(partner);
+		}
 	}
 
-	public Image getPreview() {
-		return preview.get();
+	public synchronized Image getPreview() {
+		return previewProperty == null ? preview : previewProperty.get();
 	}
 
-	public void setPreview(final Image preview) {
-		this.preview.set(preview);
+	public synchronized void setPreview(final Image preview) {
+		if (previewProperty == null) {
+			this.preview = preview;
+		} else {
+			previewProperty.set(preview);
+		}
 	}
 
-	public ObjectProperty<Image> previewProperty() {
-		return preview;
+	public synchronized ObjectProperty<Image> previewProperty() {
+		if (previewProperty == null) {
+			previewProperty = new SimpleObjectProperty<>(this, "preview", preview);
+		}
+		return previewProperty;
 	}
 }
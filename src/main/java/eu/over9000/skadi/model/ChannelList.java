@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.model;
+
+import javafx.collections.ModifiableObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The observable list of all channels. Unlike a list with an extractor it does not fire an update for every property
+ * change, the updates of a whole batch of channels are announced with a single change by {@link #fireUpdated}, so the
+ * sorted and filtered views are only reordered once per batch.
+ */
+public class ChannelList extends ModifiableObservableListBase<Channel> {
+
+	private final List<Channel> channels = new ArrayList<>();
+
+	/**
+	 * Fires one change containing an update for each of the given channels that is part of this list.
+	 */
+	public void fireUpdated(final Collection<Channel> updated) {
+		if (updated.isEmpty()) {
+			return;
+		}
+		final Set<Channel> lookup = new HashSet<>(updated);
+
+		beginChange();
+		for (int i = 0; i < channels.size(); i++) {
+			if (lookup.contains(channels.get(i))) {
+				nextUpdate(i);
+			}
+		}
+		endChange();
+	}
+
+	/**
+	 * Removes and adds channels with a single change. The list is rebuilt in one pass instead of removing the channels
+	 * one by one.
+	 */
+	public void update(final Collection<Channel> removed, final Collection<Channel> added) {
+		final Set<Channel> lookup = new HashSet<>(removed);
+
+		beginChange();
+		try {
+			if (!lookup.isEmpty()) {
+				final List<Channel> retained = new ArrayList<>(channels.size());
+				for (final Channel channel : channels) {
+					if (lookup.contains(channel)) {
+						nextRemove(retained.size(), channel);
+					} else {
+						retained.add(channel);
+					}
+				}
+				channels.clear();
+				channels.addAll(retained);
+			}
+			if (!added.isEmpty()) {
+				final int from = channels.size();
+				channels.addAll(added);
+				nextAdd(from, channels.size());
+			}
+			modCount++;
+		} finally {
+			endChange();
+		}
+	}
+
+	@Override
+	public Channel get(final int index) {
+		return channels.get(index);
+	}
+
+	@Override
+	public int size() {
+		return channels.size();
+	}
+
+	@Override
+	protected void doAdd(final int index, final Channel element) {
+		channels.add(index, element);
+	}
+
+	@Override
+	protected Channel doSet(final int index, final Channel element) {
+		return channels.set(index, element);
+	}
+
+	@Override
+	protected Channel doRemove(final int index) {
+		return channels.remove(index);
+	}
+}
@@ -22,72 +22,138 @@
 
 package eu.over9000.skadi.model;
 
+import eu.over9000.skadi.io.ChannelSnapshotStore;
 import eu.over9000.skadi.io.PersistenceHandler;
+import eu.over9000.skadi.io.ViewerHistoryStore;
+import eu.over9000.skadi.poll.ChannelPollScheduler;
+import eu.over9000.skadi.poll.ChannelUpdateSink;
+import eu.over9000.skadi.poll.GoLiveHistogramStore;
+import eu.over9000.skadi.poll.LiveStatusSubscription;
+import eu.over9000.skadi.poll.PollIntervalPolicy;
 import eu.over9000.skadi.remote.ChannelDataRetriever;
-import eu.over9000.skadi.service.ChannelUpdateService;
+import eu.over9000.skadi.remote.pubsub.PubSubClient;
 import eu.over9000.skadi.ui.StatusBarWrapper;
 import eu.over9000.skadi.util.StringUtil;
-import javafx.beans.Observable;
-import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.collections.ObservableMap;
 
+import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class ChannelStore {
 
-	private final ObservableList<Channel> channels = FXCollections.observableArrayList(c -> new Observable[]{c.titleProperty(), c.nameProperty(), c.uptimeProperty(), c.onlineProperty(), c.viewerProperty(), c.gameProperty()});
+	private static final String GO_LIVE_HISTOGRAM_FILE = "skadi_golive.dat";
+	private static final String VIEWER_HISTORY_DIRECTORY = "history";
+	private static final String CHANNEL_SNAPSHOT_FILE = "skadi_channels.dat";
+	private static final Pattern USERNAME_PATTERN = Pattern.compile(StringUtil.USERNAME_REGEX);
 
-	private final ObservableMap<Channel, ChannelUpdateService> channelUpdater = FXCollections.observableHashMap();
+	private final ChannelList channels = new ChannelList();
+	// kept in sync with the list by its listener
+	private final Map<ChannelKey, Channel> index = new ConcurrentHashMap<>();
+	private final Set<ChannelKey> persisted = new HashSet<>();
+	private final ChannelUpdateSink updateSink = new ChannelUpdateSink(channels);
+
+	private final GoLiveHistogramStore goLiveHistogramStore;
+	private final ChannelPollScheduler pollScheduler;
+	private final LiveStatusSubscription liveStatusSubscription;
+	private final ViewerHistoryStore viewerHistoryStore;
+	private final ChannelSnapshotStore channelSnapshotStore;
 
 	public ChannelStore(final PersistenceHandler persistenceHandler, final StateContainer state) {
+		goLiveHistogramStore = new GoLiveHistogramStore(Paths.get(PersistenceHandler.PERSISTENCE_DIRECTORY, GO_LIVE_HISTOGRAM_FILE));
+		goLiveHistogramStore.load();
+		pollScheduler = new ChannelPollScheduler(PollIntervalPolicy.fromState(state, goLiveHistogramStore), goLiveHistogramStore, updateSink);
+		liveStatusSubscription = new LiveStatusSubscription(PubSubClient.DEFAULT_URI, updateSink, pollScheduler);
+		viewerHistoryStore = new ViewerHistoryStore(Paths.get(PersistenceHandler.PERSISTENCE_DIRECTORY, VIEWER_HISTORY_DIRECTORY));
+		channelSnapshotStore = new ChannelSnapshotStore(Paths.get(PersistenceHandler.PERSISTENCE_DIRECTORY, CHANNEL_SNAPSHOT_FILE));
 
-		final List<Channel> emptyChannels = state.getChannels().stream().map(String::toLowerCase).map(Channel::new).collect(Collectors.toList());
+		final List<Channel> emptyChannels = state.getChannels().stream().map(name -> ChannelKey.of(name).getName()).map(Channel::new).collect(Collectors.toList());
+		channelSnapshotStore.restore(emptyChannels);
+		state.getChannels().forEach(name -> persisted.add(ChannelKey.of(name)));
 
 		channels.addListener((final ListChangeListener.Change<? extends Channel> c) -> {
 			boolean updateState = false;
 			while (c.next()) {
-				if (c.wasAdded()) {
+				if (c.wasRemoved()) {
 					updateState = true;
-					for (final Channel channel : c.getAddedSubList()) {
-						final ChannelUpdateService service = new ChannelUpdateService(channel);
-						service.start();
-						channelUpdater.put(channel, service);
-					}
-				} else if (c.wasRemoved()) {
+					c.getRemoved().forEach(channel -> index.remove(channel.getKey(), channel));
+					c.getRemoved().forEach(pollScheduler::unregister);
+					c.getRemoved().forEach(liveStatusSubscription::unregister);
+					c.getRemoved().forEach(viewerHistoryStore::unregister);
+				}
+				if (c.wasAdded()) {
 					updateState = true;
-					for (final Channel channel : c.getRemoved()) {
-						final ChannelUpdateService service = channelUpdater.remove(channel);
-						service.cancel();
-					}
+					c.getAddedSubList().forEach(channel -> index.put(channel.getKey(), channel));
+					c.getAddedSubList().forEach(viewerHistoryStore::register);
+					c.getAddedSubList().forEach(pollScheduler::register);
+					c.getAddedSubList().forEach(liveStatusSubscription::register);
 				}
 			}
 
-			if (updateState) {
-				final List<String> channelnames = getChannelNames();
-				if (channelnames.containsAll(state.getChannels()) && state.getChannels().containsAll(channelnames)) {
-					return;
-				}
-				state.getChannels().clear();
-				state.getChannels().addAll(channelnames);
+			// batched mutations arrive as one change, so the state is saved once per batch
+			if (updateState && !persisted.equals(index.keySet())) {
+				persisted.clear();
+				persisted.addAll(index.keySet());
+				state.setChannels(getChannelNames());
 				persistenceHandler.saveState(state);
 			}
 		});
 
 		channels.addAll(emptyChannels);
+		viewerHistoryStore.start();
+		pollScheduler.start();
+		liveStatusSubscription.setEnabled(state.isPushUpdates());
 	}
 
 	public ObservableList<Channel> getChannels() {
 		return channels;
 	}
 
+	public ChannelUpdateSink getUpdateSink() {
+		return updateSink;
+	}
+
+	public ChannelPollScheduler getPollScheduler() {
+		return pollScheduler;
+	}
+
+	public LiveStatusSubscription getLiveStatusSubscription() {
+		return liveStatusSubscription;
+	}
+
+	public ViewerHistoryStore getViewerHistoryStore() {
+		return viewerHistoryStore;
+	}
+
+	public GoLiveHistogramStore getGoLiveHistogramStore() {
+		return goLiveHistogramStore;
+	}
+
+	public void onShutdown() {
+		liveStatusSubscription.setEnabled(false);
+		pollScheduler.stop();
+		viewerHistoryStore.stop();
+		channelSnapshotStore.save(channels);
+	}
+
+	/**
+	 * @return the channel with the given name, ignoring case
+	 */
+	public Optional<Channel> getChannel(final String name) {
+		return Optional.ofNullable(index.get(ChannelKey.of(name)));
+	}
+
 	public List<String> getChannelNames() {
 		return channels.stream().flatMap(c -> Stream.of(c.getName())).sorted().collect(Collectors.toList());
 	}
@@ -117,22 +183,51 @@ public class ChannelStore {
 	}
 
 	public void addChannels(final Collection<String> result, final StatusBarWrapper sb) {
-		final Set<Channel> dummys = new HashSet<>();
-		result.forEach(c -> {
+		final int added = updateChannels(result, Collections.emptySet());
+		sb.updateStatusText("added " + added + " channels");
+	}
+
+	public void removeChannels(final Collection<Channel> removed, final StatusBarWrapper sb) {
+		updateChannels(Collections.emptySet(), removed);
+		sb.updateStatusText(removed.size() == 1 ? "Removed channel " + removed.iterator().next().getName() : "Removed " + removed.size() + " channels");
+	}
+
+	/**
+	 * Replaces the channel list with the given names, channels that are already present keep their state.
+	 */
+	public void replaceChannels(final Collection<String> names, final StatusBarWrapper sb) {
+		final Set<ChannelKey> keys = names.stream().map(ChannelKey::of).collect(Collectors.toSet());
+		final List<Channel> removed = index.values().stream().filter(channel -> !keys.contains(channel.getKey())).collect(Collectors.toList());
+		final int added = updateChannels(names, removed);
+		sb.updateStatusText("added " + added + " and removed " + removed.size() + " channels");
+	}
+
+	/**
+	 * Adds and removes channels as one change of the channel list, so listeners run and the state is saved only once.
+	 * Names that are invalid or already present are skipped.
+	 *
+	 * @return the number of added channels
+	 */
+	public int updateChannels(final Collection<String> added, final Collection<Channel> removed) {
+		// channels are equal by their key, so duplicates within the names are dropped as well
+		final Set<Channel> dummys = new LinkedHashSet<>();
+		added.forEach(c -> {
 			if (checkPattern(c) && !checkContains(c)) {
 				dummys.add(buildDummyChannel(c));
 			}
 		});
-		channels.addAll(dummys);
-		sb.updateStatusText("added " + dummys.size() + " channels");
+		if (!dummys.isEmpty() || !removed.isEmpty()) {
+			channels.update(removed, dummys);
+		}
+		return dummys.size();
 	}
 
 	private boolean checkPattern(final String channel) {
-		return Pattern.matches(StringUtil.USERNAME_REGEX, channel);
+		return USERNAME_PATTERN.matcher(channel).matches();
 	}
 
 	private boolean checkContains(final String channel) {
-		return StringUtil.containsIgnoreCase(getChannelNames(), channel);
+		return index.containsKey(ChannelKey.of(channel));
 	}
 
 	private boolean checkExists(final String channel) {
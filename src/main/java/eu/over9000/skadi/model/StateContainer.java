@@ -24,42 +24,38 @@ package eu.over9000.skadi.model;
 
 import org.apache.commons.lang3.SystemUtils;
 
-import javax.xml.bind.annotation.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
-@XmlRootElement(name = "skadi_data")
-@XmlAccessorType(XmlAccessType.NONE)
+/**
+ * The persisted settings and channel list, see {@link eu.over9000.skadi.io.StateCodec} for the file format.
+ */
 public final class StateContainer {
 
-	@XmlElementWrapper(name = "channels")
-	@XmlElement(name = "channel")
-	private final List<String> channels = new ArrayList<>();
-	@XmlElementWrapper(name = "livestreamer_args")
-	@XmlElement(name = "arg")
+	private volatile List<String> channels = new ArrayList<>();
 	private final List<String> livestreamerArgs = new ArrayList<>();
-	@XmlElement(name = "executable_chrome")
 	private String executableChrome = getDefaultChrome();
-	@XmlElement(name = "executable_livestreamer")
 	private String executableLivestreamer = getDefaultLivestreamer();
-	@XmlElement(name = "display_notifications")
 	private boolean displayNotifications = true;
-	@XmlElement(name = "minimize_to_tray")
 	private boolean minimizeToTray = false;
-	@XmlElement(name = "online_filter_active")
 	private boolean onlineFilterActive = false;
-	@XmlElement(name = "use_dark_theme")
 	private boolean useDarkTheme = false;
-	@XmlElement(name = "show_grid")
 	private boolean showGrid = false;
-	@XmlElement(name = "window_width")
 	private double windowWidth = 1280;
-	@XmlElement(name = "window_height")
 	private double windowHeight = 720;
-	@XmlElement(name = "grid_scale")
 	private double gridScale = 0.0;
-	@XmlElement(name = "auth_token")
 	private String authToken = null;
+	private boolean adaptivePolling = false;
+	private int pollIntervalLive = 60;
+	private int pollIntervalRecent = 120;
+	private int pollIntervalDormant = 600;
+	private int dormantAfter = 120;
+	private boolean predictivePolling = false;
+	private boolean pushUpdates = false;
+	private double apiRequestsPerSecond = 10;
+	private int apiBurst = 30;
+	private int viewerHistoryHours = 24;
 
 	public StateContainer() {
 	}
@@ -121,6 +117,13 @@ public final class StateContainer {
 		return channels;
 	}
 
+	/**
+	 * Replaces the channel list as a whole, so a state written in the background never sees a half updated list.
+	 */
+	public void setChannels(final Collection<String> channels) {
+		this.channels = new ArrayList<>(channels);
+	}
+
 	public boolean isOnlineFilterActive() {
 		return onlineFilterActive;
 	}
@@ -184,4 +187,96 @@ public final class StateContainer {
 	public List<String> getLivestreamerArgs() {
 		return livestreamerArgs;
 	}
+
+	public boolean isAdaptivePolling() {
+		return adaptivePolling;
+	}
+
+	public void setAdaptivePolling(final boolean adaptivePolling) {
+		this.adaptivePolling = adaptivePolling;
+	}
+
+	/**
+	 * @return the poll interval for live channels in seconds
+	 */
+	public int getPollIntervalLive() {
+		return pollIntervalLive;
+	}
+
+	public void setPollIntervalLive(final int pollIntervalLive) {
+		this.pollIntervalLive = pollIntervalLive;
+	}
+
+	/**
+	 * @return the poll interval for channels that went offline recently in seconds
+	 */
+	public int getPollIntervalRecent() {
+		return pollIntervalRecent;
+	}
+
+	public void setPollIntervalRecent(final int pollIntervalRecent) {
+		this.pollIntervalRecent = pollIntervalRecent;
+	}
+
+	/**
+	 * @return the poll interval for dormant channels in seconds
+	 */
+	public int getPollIntervalDormant() {
+		return pollIntervalDormant;
+	}
+
+	public void setPollIntervalDormant(final int pollIntervalDormant) {
+		this.pollIntervalDormant = pollIntervalDormant;
+	}
+
+	/**
+	 * @return the minutes after which an offline channel counts as dormant
+	 */
+	public int getDormantAfter() {
+		return dormantAfter;
+	}
+
+	public void setDormantAfter(final int dormantAfter) {
+		this.dormantAfter = dormantAfter;
+	}
+
+	public boolean isPredictivePolling() {
+		return predictivePolling;
+	}
+
+	public void setPredictivePolling(final boolean predictivePolling) {
+		this.predictivePolling = predictivePolling;
+	}
+
+	public boolean isPushUpdates() {
+		return pushUpdates;
+	}
+
+	public void setPushUpdates(final boolean pushUpdates) {
+		this.pushUpdates = pushUpdates;
+	}
+
+	public double getApiRequestsPerSecond() {
+		return apiRequestsPerSecond;
+	}
+
+	public void setApiRequestsPerSecond(final double apiRequestsPerSecond) {
+		this.apiRequestsPerSecond = apiRequestsPerSecond;
+	}
+
+	public int getApiBurst() {
+		return apiBurst;
+	}
+
+	public void setApiBurst(final int apiBurst) {
+		this.apiBurst = apiBurst;
+	}
+
+	public int getViewerHistoryHours() {
+		return viewerHistoryHours;
+	}
+
+	public void setViewerHistoryHours(final int viewerHistoryHours) {
+		this.viewerHistoryHours = viewerHistoryHours;
+	}
 }
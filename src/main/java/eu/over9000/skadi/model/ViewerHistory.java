@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.model;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The viewer counts of a channel over time. Samples older than the retention window are dropped and the number of
+ * samples is capped, so the memory used per channel is bounded no matter how long skadi runs.
+ * <p>
+ * The samples are compressed into blocks of 64: timestamps as delta of delta and viewer counts as delta to the
+ * previous sample, both as zig-zag varints. With polls at a steady interval and slowly changing counts most samples
+ * take 2-4 bytes. Samples are decoded by cursors that move forward through the blocks, reading the history in order
+ * like the chart does costs constant time per sample.
+ * <p>
+ * Sum, minimum, maximum and the moving average over the last minutes are maintained incrementally as samples arrive
+ * and expire, so reading them costs the same no matter how long the history is.
+ * <p>
+ * Listeners are invalidated after every added sample, which is meant to happen on the FX thread.
+ */
+public class ViewerHistory implements Observable {
+
+	public static final int DEFAULT_CAPACITY = 2048;
+	public static final long DEFAULT_MOVING_WINDOW = TimeUnit.MINUTES.toMillis(10);
+
+	private static final int BLOCK_SIZE = 64;
+	private static final int INITIAL_BLOCK_BYTES = 32;
+	// two varints of at most 10 bytes
+	private static final int MAX_SAMPLE_BYTES = 20;
+	private static final long[] EMPTY = new long[0];
+
+	private static volatile long defaultRetention = TimeUnit.HOURS.toMillis(24);
+
+	private final int capacity;
+	private final long retention;
+	private final long movingWindow;
+
+	// the block at index i holds the sequence numbers from (firstBlock + i) * BLOCK_SIZE on
+	private final List<Block> blocks = new ArrayList<>();
+	private long firstBlock;
+	private int size;
+	private long added;
+	private long lastTime;
+	private long lastViewer;
+	private long lastDelta;
+
+	private final Cursor headCursor = new Cursor();
+	private final Cursor windowCursor = new Cursor();
+	private final Cursor readCursor = new Cursor();
+
+	// running aggregates, samples are addressed by their sequence number
+	private long sum;
+	private long windowSum;
+	private long windowStart;
+	private final SequenceQueue maxQueue = new SequenceQueue();
+	private final SequenceQueue minQueue = new SequenceQueue();
+
+	private List<InvalidationListener> listeners;
+
+	public ViewerHistory() {
+		this(DEFAULT_CAPACITY, defaultRetention);
+	}
+
+	public ViewerHistory(final int capacity, final long retention) {
+		this(capacity, retention, DEFAULT_MOVING_WINDOW);
+	}
+
+	public ViewerHistory(final int capacity, final long retention, final long movingWindow) {
+		this.capacity = capacity;
+		this.retention = retention;
+		this.movingWindow = movingWindow;
+	}
+
+	/**
+	 * Sets the retention window of histories created afterwards.
+	 */
+	public static void setDefaultRetention(final long retention) {
+		defaultRetention = retention;
+	}
+
+	public void add(final long time, final long viewer) {
+		final long cutoff = time - retention;
+		while (size > 0 && headCursor.seek(added - size).time < cutoff) {
+			removeOldest();
+		}
+		if (size == capacity) {
+			removeOldest();
+		}
+
+		final long sequence = added;
+		encode(sequence, time, viewer);
+		size++;
+		added++;
+
+		sum += viewer;
+		// the queues keep the candidates for the maximum and minimum of every suffix of the history
+		while (!maxQueue.isEmpty() && maxQueue.peekLastViewer() < viewer) {
+			maxQueue.removeLast();
+		}
+		maxQueue.addLast(sequence, time, viewer, capacity);
+		while (!minQueue.isEmpty() && minQueue.peekLastViewer() > viewer) {
+			minQueue.removeLast();
+		}
+		minQueue.addLast(sequence, time, viewer, capacity);
+
+		windowSum += viewer;
+		final long windowCutoff = time - movingWindow;
+		while (windowStart < sequence && windowCursor.seek(windowStart).time < windowCutoff) {
+			windowSum -= windowCursor.viewer;
+			windowStart++;
+		}
+
+		fireInvalidated();
+	}
+
+	private void encode(final long sequence, final long time, final long viewer) {
+		if (sequence % BLOCK_SIZE == 0) {
+			if (!blocks.isEmpty()) {
+				blocks.get(blocks.size() - 1).trim();
+			}
+			blocks.add(new Block(time, viewer));
+			lastDelta = 0;
+		} else {
+			final Block block = blocks.get(blocks.size() - 1);
+			final long delta = time - lastTime;
+			block.write(zigZag(delta - lastDelta));
+			block.write(zigZag(viewer - lastViewer));
+			lastDelta = delta;
+		}
+		lastTime = time;
+		lastViewer = viewer;
+	}
+
+	private void removeOldest() {
+		final long sequence = added - size;
+		final long viewer = headCursor.seek(sequence).viewer;
+		sum -= viewer;
+		if (maxQueue.peekFirst() == sequence) {
+			maxQueue.removeFirst();
+		}
+		if (minQueue.peekFirst() == sequence) {
+			minQueue.removeFirst();
+		}
+		if (windowStart == sequence) {
+			windowSum -= viewer;
+			windowStart++;
+		}
+		size--;
+		// the block is dropped once its last sample expired
+		if ((sequence + 1) % BLOCK_SIZE == 0) {
+			blocks.remove(0);
+			firstBlock++;
+		}
+	}
+
+	private Block getBlock(final long sequence) {
+		return blocks.get((int) (sequence / BLOCK_SIZE - firstBlock));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param index
+	 * 		0 for the oldest sample
+	 */
+	public long getTime(final int index) {
+		return readCursor.seek(added - size + index).time;
+	}
+
+	/**
+	 * @param index
+	 * 		0 for the oldest sample
+	 */
+	public long getViewer(final int index) {
+		return readCursor.seek(added - size + index).viewer;
+	}
+
+	/**
+	 * @return the number of samples ever added, the oldest retained sample has the sequence number {@code
+	 * getAddedCount() - size()}
+	 */
+	public long getAddedCount() {
+		return added;
+	}
+
+	/**
+	 * @return the number of bytes used by the encoded samples
+	 */
+	public int getEncodedSize() {
+		return blocks.stream().mapToInt(block -> block.data.length).sum();
+	}
+
+	public long getAverage() {
+		return size == 0 ? 0 : sum / size;
+	}
+
+	public long getMin() {
+		return size == 0 ? 0 : minQueue.peekFirstViewer();
+	}
+
+	public long getMax() {
+		return size == 0 ? 0 : maxQueue.peekFirstViewer();
+	}
+
+	/**
+	 * @return the time the maximum was first reached, 0 if the history is empty
+	 */
+	public long getPeakTime() {
+		return size == 0 ? 0 : maxQueue.peekFirstTime();
+	}
+
+	/**
+	 * @return the average of the samples within the moving window up to the latest sample
+	 */
+	public long getMovingAverage() {
+		final long count = added - windowStart;
+		return count == 0 ? 0 : windowSum / count;
+	}
+
+	public long getRetention() {
+		return retention;
+	}
+
+	public long getMovingWindow() {
+		return movingWindow;
+	}
+
+	private void fireInvalidated() {
+		if (listeners != null) {
+			listeners.forEach(listener -> listener.invalidated(this));
+		}
+	}
+
+	@Override
+	public void addListener(final InvalidationListener listener) {
+		if (listeners == null) {
+			listeners = new CopyOnWriteArrayList<>();
+		}
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(final InvalidationListener listener) {
+		if (listeners != null) {
+			listeners.remove(listener);
+		}
+	}
+
+	private static long zigZag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * Up to 64 samples, the first one is stored as is, the others as varints in data.
+	 */
+	private static final class Block {
+		private final long firstTime;
+		private final long firstViewer;
+		private byte[] data = new byte[INITIAL_BLOCK_BYTES];
+		private int length;
+
+		private Block(final long firstTime, final long firstViewer) {
+			this.firstTime = firstTime;
+			this.firstViewer = firstViewer;
+		}
+
+		private void write(long value) {
+			if (length + MAX_SAMPLE_BYTES / 2 > data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+			while ((value & ~0x7fL) != 0) {
+				data[length++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			data[length++] = (byte) value;
+		}
+
+		private void trim() {
+			data = Arrays.copyOf(data, length);
+		}
+	}
+
+	/**
+	 * Decodes the sample at a sequence number, moving forward from the previous position if possible.
+	 */
+	private final class Cursor {
+		private Block block;
+		private long sequence;
+		private int position;
+		private long time;
+		private long viewer;
+		private long delta;
+
+		private Cursor seek(final long target) {
+			final Block targetBlock = getBlock(target);
+			if (block != targetBlock || target < sequence) {
+				block = targetBlock;
+				sequence = target - target % BLOCK_SIZE;
+				position = 0;
+				time = block.firstTime;
+				viewer = block.firstViewer;
+				delta = 0;
+			}
+			while (sequence < target) {
+				delta += readZigZag();
+				time += delta;
+				viewer += readZigZag();
+				sequence++;
+			}
+			return this;
+		}
+
+		private long readZigZag() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = block.data[position++];
+				value |= (long) (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return (value >>> 1) ^ -(value & 1);
+		}
+	}
+
+	/**
+	 * A deque of samples in a growable ring buffer.
+	 */
+	private static final class SequenceQueue {
+		private long[] sequences = EMPTY;
+		private long[] times = EMPTY;
+		private long[] viewers = EMPTY;
+		private int head;
+		private int size;
+
+		private boolean isEmpty() {
+			return size == 0;
+		}
+
+		private long peekFirst() {
+			return size == 0 ? -1 : sequences[head];
+		}
+
+		private long peekFirstTime() {
+			return times[head];
+		}
+
+		private long peekFirstViewer() {
+			return viewers[head];
+		}
+
+		private long peekLastViewer() {
+			return viewers[(head + size - 1) % viewers.length];
+		}
+
+		private void addLast(final long sequence, final long time, final long viewer, final int capacity) {
+			if (size == sequences.length) {
+				final int length = Math.min(capacity, Math.max(4, sequences.length * 2));
+				sequences = copy(sequences, length);
+				times = copy(times, length);
+				viewers = copy(viewers, length);
+				head = 0;
+			}
+			final int index = (head + size) % sequences.length;
+			sequences[index] = sequence;
+			times[index] = time;
+			viewers[index] = viewer;
+			size++;
+		}
+
+		private long[] copy(final long[] items, final int length) {
+			final long[] copy = new long[length];
+			for (int i = 0; i < size; i++) {
+				copy[i] = items[(head + i) % items.length];
+			}
+			return copy;
+		}
+
+		private void removeFirst() {
+			head = (head + 1) % sequences.length;
+			size--;
+		}
+
+		private void removeLast() {
+			size--;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import eu.over9000.skadi.model.Channel;
+
+/**
+ * Polls live channels often, channels that went offline recently at a medium rate and dormant channels rarely.
+ * Channels whose state is not known yet are treated as live.
+ */
+public class AdaptivePollIntervalPolicy implements PollIntervalPolicy {
+
+	private final long liveInterval;
+	private final long recentInterval;
+	private final long dormantInterval;
+	private final long dormantAfter;
+
+	public AdaptivePollIntervalPolicy(final long liveInterval, final long recentInterval, final long dormantInterval, final long dormantAfter) {
+		this.liveInterval = liveInterval;
+		this.recentInterval = recentInterval;
+		this.dormantInterval = dormantInterval;
+		this.dormantAfter = dormantAfter;
+	}
+
+	@Override
+	public long getInterval(final Channel channel, final long lastSeenOnline, final long now) {
+		if (!Boolean.FALSE.equals(channel.isOnline())) {
+			return liveInterval;
+		}
+		if (lastSeenOnline > 0 && now - lastSeenOnline < dormantAfter) {
+			return recentInterval;
+		}
+		return dormantInterval;
+	}
+}
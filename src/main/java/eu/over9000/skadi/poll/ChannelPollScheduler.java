@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import eu.over9000.skadi.model.Channel;
+import eu.over9000.skadi.remote.ChannelDataRetriever;
+import eu.over9000.skadi.remote.data.ChannelMetadata;
+import eu.over9000.skadi.util.ExecutorUtil;
+import eu.over9000.skadi.util.Workload;
+import javafx.beans.value.ChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Polls the metadata of all registered channels from a single timer. Every channel gets a fixed slot within its poll
+ * interval, the channels that are due on a tick are fetched together and their results are applied through the
+ * {@link ChannelUpdateSink}. The interval of each channel is chosen by the current {@link PollIntervalPolicy} after
+ * every poll. Channels going live are recorded in the {@link GoLiveHistogramStore}.
+ * <p>
+ * Channels whose update fails back off exponentially with jitter, if most updates fail the {@link CircuitBreaker}
+ * pauses polling altogether.
+ * <p>
+ * A forced {@link #refresh} goes through the same batch path, channels that are already being polled are not
+ * requested a second time.
+ */
+public class ChannelPollScheduler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ChannelPollScheduler.class);
+
+	private static final long TICK_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+	private static final long HISTOGRAM_SAVE_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+	private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(30);
+	private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+	private static final int PROBE_SIZE = 5;
+	private static final long VISIBLE_REFRESH_AGE = TimeUnit.MINUTES.toMillis(1);
+
+	// golden ratio conjugate, consecutive multiples spread evenly over [0, 1) for any number of channels
+	private static final double SLOT_STEP = 0.6180339887498949;
+
+	private final Map<Channel, PollEntry> entries = new ConcurrentHashMap<>();
+	private final AtomicLong slotCounter = new AtomicLong();
+
+	private final GoLiveHistogramStore histogramStore;
+	private final ChannelUpdateSink updateSink;
+	private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+	private volatile PollIntervalPolicy policy;
+	private volatile Predicate<Channel> priority = channel -> false;
+	private volatile Predicate<Channel> sweepMode = channel -> false;
+	private ScheduledFuture<?> tickFuture;
+	private ScheduledFuture<?> saveFuture;
+
+	public ChannelPollScheduler(final PollIntervalPolicy policy, final GoLiveHistogramStore histogramStore, final ChannelUpdateSink updateSink) {
+		this.policy = policy;
+		this.histogramStore = histogramStore;
+		this.updateSink = updateSink;
+	}
+
+	public synchronized void start() {
+		if (tickFuture != null) {
+			return;
+		}
+		tickFuture = ExecutorUtil.getSchedulerService().scheduleWithFixedDelay(this::tick, 0, TICK_INTERVAL, TimeUnit.MILLISECONDS);
+		saveFuture = ExecutorUtil.getSchedulerService().scheduleWithFixedDelay(histogramStore::saveIfDirty, HISTOGRAM_SAVE_INTERVAL, HISTOGRAM_SAVE_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stop() {
+		if (tickFuture != null) {
+			tickFuture.cancel(false);
+			saveFuture.cancel(false);
+			tickFuture = null;
+			saveFuture = null;
+		}
+		histogramStore.saveIfDirty();
+	}
+
+	public void register(final Channel channel) {
+		final double slot = (slotCounter.getAndIncrement() * SLOT_STEP) % 1.0;
+		final PollEntry entry = new PollEntry(channel, slot);
+		entry.lastSeenOnline = histogramStore.getLastSeenOnline(channel.getKey().getName());
+		if (entries.putIfAbsent(channel, entry) == null) {
+			channel.onlineProperty().addListener(entry.onlineListener);
+		}
+	}
+
+	public void unregister(final Channel channel) {
+		final PollEntry entry = entries.remove(channel);
+		if (entry != null) {
+			channel.onlineProperty().removeListener(entry.onlineListener);
+			histogramStore.remove(channel.getKey().getName());
+		}
+	}
+
+	public int getChannelCount() {
+		return entries.size();
+	}
+
+	public void setPolicy(final PollIntervalPolicy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * Channels matching the predicate are requested first when several channels are due together, e.g. the channels
+	 * visible on screen.
+	 */
+	public void setPriority(final Predicate<Channel> priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * Channels matching the predicate are polled only every 10 minutes as a consistency sweep, e.g. while their live
+	 * status is pushed by another source.
+	 */
+	public void setSweepMode(final Predicate<Channel> sweepMode) {
+		this.sweepMode = sweepMode;
+	}
+
+	/**
+	 * Polls the channel on the next tick.
+	 */
+	public void requestPoll(final Channel channel) {
+		final PollEntry entry = entries.get(channel);
+		if (entry != null) {
+			entry.nextPoll = 0;
+		}
+	}
+
+	/**
+	 * Polls a channel that just became visible on the next tick, unless it was updated within the last minute or is
+	 * backing off after failures.
+	 */
+	public void pollVisible(final Channel channel) {
+		final PollEntry entry = entries.get(channel);
+		if (entry != null && entry.failures == 0 && entry.flight.get() == null && System.currentTimeMillis() - channel.getLastUpdatedMillis() >= VISIBLE_REFRESH_AGE) {
+			entry.nextPoll = 0;
+		}
+	}
+
+	/**
+	 * Polls the given channels now, in one batch regardless of their schedule. For channels that are already being
+	 * polled the running poll is awaited instead.
+	 *
+	 * @return a future completing once the results of all given channels have been applied
+	 */
+	public CompletableFuture<Void> refresh(final Collection<Channel> channels) {
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		final List<PollEntry> claimed = new ArrayList<>();
+		final List<CompletableFuture<Void>> running = new ArrayList<>();
+
+		for (final Channel channel : channels) {
+			final PollEntry entry = entries.get(channel);
+			if (entry == null) {
+				continue;
+			}
+			if (entry.flight.compareAndSet(null, done)) {
+				claimed.add(entry);
+			} else {
+				final CompletableFuture<Void> flight = entry.flight.get();
+				if (flight != null) {
+					running.add(flight);
+				}
+			}
+		}
+
+		if (claimed.isEmpty()) {
+			done.complete(null);
+		} else {
+			try {
+				pollBatch(claimed, done, false);
+			} catch (final RejectedExecutionException e) {
+				LOGGER.warn("poll executor is saturated, skipping refresh of " + claimed.size() + " channels", e);
+				release(claimed, done);
+			}
+		}
+		running.add(done);
+		return CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[running.size()]));
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	private void tick() {
+		try {
+			final long now = System.currentTimeMillis();
+			if (!circuitBreaker.allowRequest(now)) {
+				return;
+			}
+
+			// the probe takes a few channels regardless of their backoff
+			final boolean probe = circuitBreaker.getState() == CircuitBreaker.State.HALF_OPEN;
+			final List<PollEntry> due = new ArrayList<>();
+			final CompletableFuture<Void> done = new CompletableFuture<>();
+
+			for (final PollEntry entry : entries.values()) {
+				if (probe && due.size() == PROBE_SIZE) {
+					break;
+				}
+				if ((probe || entry.nextPoll <= now) && entry.flight.compareAndSet(null, done)) {
+					due.add(entry);
+				}
+			}
+
+			if (!due.isEmpty()) {
+				final Predicate<Channel> priority = this.priority;
+				due.sort(Comparator.comparing(entry -> !priority.test(entry.channel)));
+				try {
+					pollBatch(due, done, probe);
+				} catch (final RejectedExecutionException e) {
+					LOGGER.warn("poll executor is saturated, skipping " + due.size() + " channels", e);
+					release(due, done);
+					if (probe) {
+						circuitBreaker.abortProbe();
+					}
+				}
+			} else if (probe) {
+				circuitBreaker.abortProbe();
+			}
+		} catch (final Exception e) {
+			LOGGER.error("poll scheduler tick failed", e);
+		}
+	}
+
+	/**
+	 * @param done
+	 * 		the flight the entries were claimed with, completed after all of them were rescheduled
+	 * @param probe
+	 * 		whether this batch is the probe of the half open circuit breaker
+	 */
+	private void pollBatch(final List<PollEntry> due, final CompletableFuture<Void> done, final boolean probe) {
+		final long start = System.currentTimeMillis();
+		final List<Channel> channels = due.stream().map(entry -> entry.channel).collect(Collectors.toList());
+
+		ChannelDataRetriever.getChannelMetadata(channels, ExecutorUtil.getExecutor(Workload.POLLING)).thenAccept(batch -> {
+			final Map<Channel, ChannelMetadata> metadata = batch.getMetadata();
+			LOGGER.debug("polled " + channels.size() + " channels in " + (System.currentTimeMillis() - start) + "ms, " + metadata.size() + " updated");
+			recordOutcome(batch.getSucceededRequests(), batch.getFailedRequests(), probe);
+			updateSink.submit(metadata, () -> {
+				due.forEach(entry -> reschedule(entry, metadata.containsKey(entry.channel)));
+				done.complete(null);
+			});
+		}).exceptionally(throwable -> {
+			LOGGER.error("scheduled channel update failed for " + channels.size() + " channels", throwable);
+			recordOutcome(0, 1, probe);
+			due.forEach(entry -> reschedule(entry, false));
+			done.complete(null);
+			return null;
+		});
+	}
+
+	private void recordOutcome(final int succeeded, final int failed, final boolean probe) {
+		if (probe) {
+			circuitBreaker.recordProbe(succeeded, failed, System.currentTimeMillis());
+		} else {
+			circuitBreaker.record(succeeded, failed, System.currentTimeMillis());
+		}
+	}
+
+	private static void release(final List<PollEntry> claimed, final CompletableFuture<Void> done) {
+		claimed.forEach(entry -> entry.flight.compareAndSet(done, null));
+		done.complete(null);
+	}
+
+	private void reschedule(final PollEntry entry, final boolean success) {
+		final long now = System.currentTimeMillis();
+		if (Boolean.TRUE.equals(entry.channel.isOnline())) {
+			entry.lastSeenOnline = now;
+			histogramStore.recordSeenOnline(entry.channel.getKey().getName(), now);
+		}
+		long interval = policy.getInterval(entry.channel, entry.lastSeenOnline, now);
+		if (sweepMode.test(entry.channel)) {
+			interval = Math.max(interval, SWEEP_INTERVAL);
+		}
+		if (success) {
+			entry.failures = 0;
+			entry.nextPoll = nextSlot(entry.slot, now, interval);
+		} else {
+			entry.failures++;
+			entry.nextPoll = now + backoff(interval, entry.failures);
+		}
+		entry.flight.set(null);
+	}
+
+	/**
+	 * Doubles the interval for every consecutive failure, the result is randomized within its upper half so channels
+	 * failing together do not retry together.
+	 */
+	static long backoff(final long interval, final int failures) {
+		final long max = Math.min(MAX_BACKOFF, interval << Math.min(failures, 20));
+		return max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+	}
+
+	private static long nextSlot(final double slot, final long now, final long interval) {
+		final long cycleStart = now - (now % interval);
+		long next = cycleStart + (long) (slot * interval);
+		if (next <= now) {
+			next += interval;
+		}
+		return next;
+	}
+
+	private final class PollEntry {
+		private final Channel channel;
+		private final double slot;
+		private final ChangeListener<Boolean> onlineListener;
+		private volatile long nextPoll;
+		private volatile long lastSeenOnline;
+		// the poll this channel is part of, null while it is not being polled
+		private final AtomicReference<CompletableFuture<Void>> flight = new AtomicReference<>();
+		private volatile int failures;
+
+		private PollEntry(final Channel channel, final double slot) {
+			this.channel = channel;
+			this.slot = slot;
+			nextPoll = 0;
+			onlineListener = (observable, oldValue, newValue) -> {
+				if (channel.cameOnline()) {
+					histogramStore.recordGoLive(channel.getKey().getName(), System.currentTimeMillis());
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import eu.over9000.skadi.model.Channel;
+import eu.over9000.skadi.model.ChannelField;
+import eu.over9000.skadi.model.ChannelList;
+import eu.over9000.skadi.remote.data.ChannelMetadata;
+import javafx.application.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects channel updates from any thread and applies everything that arrived in between in one go on the FX thread.
+ * If a channel gets several updates before they are applied, they are merged field by field with the newer values
+ * winning. The channel list is notified
+ * once per batch about the channels whose sorted or filtered fields changed.
+ */
+public class ChannelUpdateSink {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ChannelUpdateSink.class);
+
+	/**
+	 * the fields the views of the channel list sort and filter by
+	 */
+	private static final Set<ChannelField> LIST_FIELDS = EnumSet.of(ChannelField.TITLE, ChannelField.ONLINE, ChannelField.VIEWER, ChannelField.GAME, ChannelField.UPTIME);
+
+	private final ChannelList channels;
+	private final Executor fxExecutor;
+
+	// in submission order, a batch is queued as a whole together with its callback
+	private final ConcurrentLinkedQueue<Submission> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	public ChannelUpdateSink(final ChannelList channels) {
+		this(channels, Platform::runLater);
+	}
+
+	ChannelUpdateSink(final ChannelList channels, final Executor fxExecutor) {
+		this.channels = channels;
+		this.fxExecutor = fxExecutor;
+	}
+
+	public void submit(final Channel channel, final ChannelMetadata metadata) {
+		pending.add(new Submission(Collections.singletonMap(channel, metadata), null));
+		schedule();
+	}
+
+	/**
+	 * Submits several updates, the callback runs on the FX thread after all of them have been applied. The map must not
+	 * be modified afterwards.
+	 */
+	public void submit(final Map<Channel, ChannelMetadata> updates, final Runnable afterApply) {
+		pending.add(new Submission(updates, afterApply));
+		schedule();
+	}
+
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			fxExecutor.execute(this::apply);
+		}
+	}
+
+	private void apply() {
+		scheduled.set(false);
+
+		final Map<Channel, ChannelMetadata> merged = new LinkedHashMap<>();
+		final List<Runnable> callbacks = new ArrayList<>();
+		Submission submission;
+		while ((submission = pending.poll()) != null) {
+			submission.updates.forEach((channel, metadata) -> merged.merge(channel, metadata, ChannelMetadata::mergedWith));
+			if (submission.afterApply != null) {
+				callbacks.add(submission.afterApply);
+			}
+		}
+
+		final List<Channel> changed = new ArrayList<>();
+		merged.forEach((channel, metadata) -> {
+			final Set<ChannelField> fields;
+			synchronized (channel) {
+				fields = channel.updateFrom(metadata);
+			}
+			if (!Collections.disjoint(fields, LIST_FIELDS)) {
+				changed.add(channel);
+			}
+		});
+		channels.fireUpdated(changed);
+
+		callbacks.forEach(Runnable::run);
+
+		LOGGER.trace("applied " + merged.size() + " channel updates, " + changed.size() + " changed");
+	}
+
+	private static final class Submission {
+		private final Map<Channel, ChannelMetadata> updates;
+		private final Runnable afterApply;
+
+		private Submission(final Map<Channel, ChannelMetadata> updates, final Runnable afterApply) {
+			this.updates = updates;
+			this.afterApply = afterApply;
+		}
+	}
+}
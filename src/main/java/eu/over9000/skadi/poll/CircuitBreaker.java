@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops all polling while most requests are failing. The outcomes of the last requests are kept in a sliding window,
+ * once the failure share exceeds the threshold the breaker opens and no requests are allowed until the open time has
+ * passed. Then a single probe is let through: if it succeeds polling continues normally, otherwise the breaker opens
+ * again for twice as long. Only the outcome of the probe itself decides, results of requests sent before the breaker
+ * opened are ignored.
+ */
+public class CircuitBreaker {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	public static final int DEFAULT_WINDOW_SIZE = 50;
+	public static final int DEFAULT_MIN_SAMPLES = 10;
+	public static final double DEFAULT_FAILURE_THRESHOLD = 0.5;
+	public static final long DEFAULT_OPEN_TIME = TimeUnit.SECONDS.toMillis(30);
+	public static final long DEFAULT_MAX_OPEN_TIME = TimeUnit.MINUTES.toMillis(10);
+
+	private final boolean[] window;
+	private final int minSamples;
+	private final double failureThreshold;
+	private final long baseOpenTime;
+	private final long maxOpenTime;
+
+	private int windowPos;
+	private int samples;
+	private int failures;
+
+	private volatile State state = State.CLOSED;
+	private volatile long openUntil;
+	private long openTime;
+
+	public CircuitBreaker() {
+		this(DEFAULT_WINDOW_SIZE, DEFAULT_MIN_SAMPLES, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_TIME, DEFAULT_MAX_OPEN_TIME);
+	}
+
+	public CircuitBreaker(final int windowSize, final int minSamples, final double failureThreshold, final long baseOpenTime, final long maxOpenTime) {
+		window = new boolean[windowSize];
+		this.minSamples = minSamples;
+		this.failureThreshold = failureThreshold;
+		this.baseOpenTime = baseOpenTime;
+		this.maxOpenTime = maxOpenTime;
+		openTime = baseOpenTime;
+	}
+
+	/**
+	 * @return true if requests may be sent, in the half open state only the caller that gets true first is the probe
+	 */
+	public synchronized boolean allowRequest(final long now) {
+		switch (state) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				if (now >= openUntil) {
+					state = State.HALF_OPEN;
+					LOGGER.info("circuit breaker half open, sending probe");
+					return true;
+				}
+				return false;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Records the outcome of a number of requests, each HTTP request counts once.
+	 */
+	public synchronized void record(final int succeeded, final int failed, final long now) {
+		if (state != State.CLOSED) {
+			// late results of requests sent before the breaker opened
+			return;
+		}
+		for (int i = 0; i < succeeded + failed; i++) {
+			add(i >= succeeded);
+		}
+		if (samples >= minSamples && failures > samples * failureThreshold) {
+			open(now, baseOpenTime);
+		}
+	}
+
+	/**
+	 * Records the outcome of the requests sent as probe after {@link #allowRequest} switched to the half open state.
+	 * The probe succeeds if its failure share is within the threshold.
+	 */
+	public synchronized void recordProbe(final int succeeded, final int failed, final long now) {
+		if (state != State.HALF_OPEN) {
+			return;
+		}
+		if (succeeded > 0 && failed <= (succeeded + failed) * failureThreshold) {
+			close();
+		} else {
+			open(now, Math.min(maxOpenTime, openTime * 2));
+		}
+	}
+
+	/**
+	 * Returns to the open state without changing the open time, for a probe that could not be sent.
+	 */
+	public synchronized void abortProbe() {
+		if (state == State.HALF_OPEN) {
+			state = State.OPEN;
+		}
+	}
+
+	private void add(final boolean failure) {
+		if (samples == window.length) {
+			if (window[windowPos]) {
+				failures--;
+			}
+		} else {
+			samples++;
+		}
+		window[windowPos] = failure;
+		if (failure) {
+			failures++;
+		}
+		windowPos = (windowPos + 1) % window.length;
+	}
+
+	private void open(final long now, final long duration) {
+		openTime = duration;
+		openUntil = now + duration;
+		state = State.OPEN;
+		LOGGER.warn("most channel requests are failing, pausing polling for " + TimeUnit.MILLISECONDS.toSeconds(duration) + "s");
+	}
+
+	private void close() {
+		state = State.CLOSED;
+		openTime = baseOpenTime;
+		windowPos = 0;
+		samples = 0;
+		failures = 0;
+		LOGGER.info("circuit breaker closed, polling resumed");
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the milliseconds until the next probe, 0 if the breaker is not open
+	 */
+	public long getRemainingOpenTime(final long now) {
+		return state == State.OPEN ? Math.max(0, openUntil - now) : 0;
+	}
+}
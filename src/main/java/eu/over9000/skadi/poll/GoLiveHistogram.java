@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Counts at which day of week and hour a channel usually goes live. The counts are halved once their sum reaches
+ * {@link #MAX_TOTAL}, so recent streams weigh more than old ones and every bucket fits into a byte.
+ */
+public class GoLiveHistogram {
+
+	public static final int BUCKET_COUNT = 7 * 24;
+	private static final int MAX_TOTAL = 100;
+
+	private final byte[] buckets;
+	private int total;
+	private long lastGoLive;
+
+	public GoLiveHistogram() {
+		this(new byte[BUCKET_COUNT], 0);
+	}
+
+	GoLiveHistogram(final byte[] buckets, final long lastGoLive) {
+		this.buckets = buckets;
+		this.lastGoLive = lastGoLive;
+		for (final byte bucket : buckets) {
+			total += bucket;
+		}
+	}
+
+	public synchronized void recordGoLive(final long time) {
+		if (total >= MAX_TOTAL) {
+			total = 0;
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				buckets[i] = (byte) (buckets[i] / 2);
+				total += buckets[i];
+			}
+		}
+
+		buckets[getBucket(time)]++;
+		total++;
+		lastGoLive = time;
+	}
+
+	/**
+	 * @return the number of recorded go-lives in the bucket of the given time
+	 */
+	public synchronized int getCount(final long time) {
+		return buckets[getBucket(time)];
+	}
+
+	/**
+	 * @return the share of all recorded go-lives that fall into the bucket of the given time
+	 */
+	public synchronized double getShare(final long time) {
+		return total == 0 ? 0 : (double) buckets[getBucket(time)] / total;
+	}
+
+	public synchronized int getTotal() {
+		return total;
+	}
+
+	public synchronized long getLastGoLive() {
+		return lastGoLive;
+	}
+
+	synchronized byte[] getBuckets() {
+		return buckets.clone();
+	}
+
+	private static int getBucket(final long time) {
+		final ZonedDateTime date = Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault());
+		return (date.getDayOfWeek().getValue() - 1) * 24 + date.getHour();
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import eu.over9000.skadi.model.ChannelKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the {@link GoLiveHistogram} and the time a channel was last seen live for every channel and persists them into
+ * a small binary file, so the poll interval policies know the recently live channels right after a restart.
+ */
+public class GoLiveHistogramStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(GoLiveHistogramStore.class);
+
+	private static final int FILE_MAGIC = 0x534b474c;
+	private static final int FILE_VERSION = 1;
+
+	private final Path file;
+	private final Map<String, GoLiveHistogram> histograms = new ConcurrentHashMap<>();
+	private final Map<String, Long> lastSeenOnline = new ConcurrentHashMap<>();
+	private final AtomicBoolean dirty = new AtomicBoolean();
+
+	public GoLiveHistogramStore(final Path file) {
+		this.file = file;
+	}
+
+	public GoLiveHistogram get(final String channel) {
+		return histograms.get(channel);
+	}
+
+	public void recordGoLive(final String channel, final long time) {
+		histograms.computeIfAbsent(channel, name -> new GoLiveHistogram()).recordGoLive(time);
+		dirty.set(true);
+	}
+
+	/**
+	 * @return the last time the channel was seen live, 0 if unknown
+	 */
+	public long getLastSeenOnline(final String channel) {
+		return lastSeenOnline.getOrDefault(channel, 0L);
+	}
+
+	public void recordSeenOnline(final String channel, final long time) {
+		lastSeenOnline.put(channel, time);
+		dirty.set(true);
+	}
+
+	public void remove(final String channel) {
+		final boolean removedHistogram = histograms.remove(channel) != null;
+		final boolean removedSeenOnline = lastSeenOnline.remove(channel) != null;
+		if (removedHistogram || removedSeenOnline) {
+			dirty.set(true);
+		}
+	}
+
+	public void load() {
+		if (!Files.exists(file)) {
+			return;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != FILE_MAGIC) {
+				LOGGER.warn("ignoring go-live histograms with unknown format in " + file);
+				return;
+			}
+			final int version = in.readInt();
+			if (version != FILE_VERSION) {
+				LOGGER.warn("ignoring go-live histograms with unknown version " + version + " in " + file);
+				return;
+			}
+
+			final int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				final String channel = ChannelKey.of(in.readUTF()).getName();
+				final long lastGoLive = in.readLong();
+				final byte[] buckets = new byte[GoLiveHistogram.BUCKET_COUNT];
+				in.readFully(buckets);
+				histograms.put(channel, new GoLiveHistogram(buckets, lastGoLive));
+			}
+			final int seenCount = in.readInt();
+			for (int i = 0; i < seenCount; i++) {
+				lastSeenOnline.put(ChannelKey.of(in.readUTF()).getName(), in.readLong());
+			}
+			LOGGER.debug("loaded " + count + " go-live histograms");
+		} catch (final IOException e) {
+			LOGGER.error("exception loading go-live histograms", e);
+		}
+	}
+
+	public void saveIfDirty() {
+		if (dirty.getAndSet(false)) {
+			save();
+		}
+	}
+
+	private void save() {
+		final Map<String, GoLiveHistogram> snapshot = new HashMap<>(histograms);
+		final Map<String, Long> seenSnapshot = new HashMap<>(lastSeenOnline);
+		final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try {
+			Files.createDirectories(file.getParent());
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(FILE_MAGIC);
+				out.writeInt(FILE_VERSION);
+				out.writeInt(snapshot.size());
+				for (final Map.Entry<String, GoLiveHistogram> entry : snapshot.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeLong(entry.getValue().getLastGoLive());
+					out.write(entry.getValue().getBuckets());
+				}
+				out.writeInt(seenSnapshot.size());
+				for (final Map.Entry<String, Long> entry : seenSnapshot.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeLong(entry.getValue());
+				}
+			}
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOGGER.debug("wrote " + snapshot.size() + " go-live histograms");
+		} catch (final IOException e) {
+			dirty.set(true);
+			LOGGER.error("exception saving go-live histograms", e);
+		}
+	}
+}
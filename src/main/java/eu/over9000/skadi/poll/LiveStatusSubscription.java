@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import eu.over9000.skadi.model.Channel;
+import eu.over9000.skadi.model.ChannelKey;
+import eu.over9000.skadi.remote.data.ChannelMetadata;
+import eu.over9000.skadi.remote.pubsub.PubSubClient;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Receives stream up/down and viewer count events of all registered channels via pubsub and applies them through the
+ * {@link ChannelUpdateSink} right away. A channel going live is also polled immediately to get its title and game.
+ * Channels whose subscription the server acknowledged are only polled as a slow consistency sweep by the
+ * {@link ChannelPollScheduler}, all others keep their normal interval.
+ */
+public class LiveStatusSubscription implements PubSubClient.Listener {
+
+	private final Map<ChannelKey, Channel> channels = new ConcurrentHashMap<>();
+	private final Set<ChannelKey> listening = ConcurrentHashMap.newKeySet();
+	private final ChannelUpdateSink updateSink;
+	private final ChannelPollScheduler pollScheduler;
+	private final PubSubClient client;
+
+	public LiveStatusSubscription(final URI uri, final ChannelUpdateSink updateSink, final ChannelPollScheduler pollScheduler) {
+		this.updateSink = updateSink;
+		this.pollScheduler = pollScheduler;
+		client = new PubSubClient(uri, this);
+	}
+
+	public void setEnabled(final boolean enabled) {
+		if (enabled) {
+			pollScheduler.setSweepMode(channel -> listening.contains(channel.getKey()));
+			client.start();
+		} else {
+			client.stop();
+			pollScheduler.setSweepMode(channel -> false);
+		}
+	}
+
+	public void register(final Channel channel) {
+		channels.put(channel.getKey(), channel);
+		client.subscribe(channel.getName());
+	}
+
+	public void unregister(final Channel channel) {
+		channels.remove(channel.getKey());
+		client.unsubscribe(channel.getName());
+	}
+
+	public boolean isConnected() {
+		return client.isConnected();
+	}
+
+	@Override
+	public void onStreamUp(final String name, final long serverTime) {
+		final Channel channel = channels.get(ChannelKey.of(name));
+		if (channel != null) {
+			updateSink.submit(channel, ChannelMetadata.wentOnline(Math.max(0, System.currentTimeMillis() - serverTime)));
+			pollScheduler.requestPoll(channel);
+		}
+	}
+
+	@Override
+	public void onStreamDown(final String name) {
+		final Channel channel = channels.get(ChannelKey.of(name));
+		if (channel != null) {
+			updateSink.submit(channel, ChannelMetadata.stillOffline());
+		}
+	}
+
+	@Override
+	public void onViewCount(final String name, final long viewers) {
+		final Channel channel = channels.get(ChannelKey.of(name));
+		if (channel != null) {
+			updateSink.submit(channel, ChannelMetadata.viewerCount(viewers));
+		}
+	}
+
+	@Override
+	public void onListening(final String name, final boolean listening) {
+		final ChannelKey key = ChannelKey.of(name);
+		if (listening) {
+			this.listening.add(key);
+			return;
+		}
+		this.listening.remove(key);
+		final Channel channel = channels.get(key);
+		if (channel != null) {
+			// events may have been missed, catch up by polling
+			pollScheduler.requestPoll(channel);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import eu.over9000.skadi.model.Channel;
+import eu.over9000.skadi.model.StateContainer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long the {@link ChannelPollScheduler} waits before polling a channel again.
+ */
+public interface PollIntervalPolicy {
+
+	long DEFAULT_INTERVAL = TimeUnit.SECONDS.toMillis(60);
+
+	/**
+	 * @param channel
+	 * 		the channel that was just polled
+	 * @param lastSeenOnline
+	 * 		the last time the channel was seen live, 0 if unknown
+	 * @param now
+	 * 		the current time
+	 * @return the poll interval in milliseconds
+	 */
+	long getInterval(Channel channel, long lastSeenOnline, long now);
+
+	static PollIntervalPolicy fromState(final StateContainer state, final GoLiveHistogramStore histogramStore) {
+		final PollIntervalPolicy policy;
+		if (state.isAdaptivePolling()) {
+			policy = new AdaptivePollIntervalPolicy(TimeUnit.SECONDS.toMillis(state.getPollIntervalLive()), TimeUnit.SECONDS.toMillis(state.getPollIntervalRecent()), TimeUnit.SECONDS.toMillis(state.getPollIntervalDormant()), TimeUnit.MINUTES.toMillis(state.getDormantAfter()));
+		} else {
+			policy = (channel, lastSeenOnline, now) -> DEFAULT_INTERVAL;
+		}
+
+		if (state.isPredictivePolling()) {
+			return new PredictivePollIntervalPolicy(policy, histogramStore);
+		}
+		return policy;
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import eu.over9000.skadi.model.Channel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts the interval of another policy for offline channels with a known go-live pattern: channels are polled every
+ * few seconds around the times they usually go live, and less often than usual at times they never went live before.
+ */
+public class PredictivePollIntervalPolicy implements PollIntervalPolicy {
+
+	private static final long EXPECTED_INTERVAL = TimeUnit.SECONDS.toMillis(15);
+	private static final long LOOKAHEAD = TimeUnit.MINUTES.toMillis(15);
+	private static final long MAX_RELAXED_INTERVAL = TimeUnit.MINUTES.toMillis(15);
+	private static final int RELAX_FACTOR = 2;
+
+	private static final int MIN_TOTAL = 5;
+	private static final int MIN_COUNT = 2;
+	private static final double MIN_SHARE = 0.1;
+
+	private final PollIntervalPolicy delegate;
+	private final GoLiveHistogramStore histogramStore;
+
+	public PredictivePollIntervalPolicy(final PollIntervalPolicy delegate, final GoLiveHistogramStore histogramStore) {
+		this.delegate = delegate;
+		this.histogramStore = histogramStore;
+	}
+
+	@Override
+	public long getInterval(final Channel channel, final long lastSeenOnline, final long now) {
+		final long interval = delegate.getInterval(channel, lastSeenOnline, now);
+
+		if (!Boolean.FALSE.equals(channel.isOnline())) {
+			return interval;
+		}
+
+		final GoLiveHistogram histogram = histogramStore.get(channel.getKey().getName());
+		if (histogram == null || histogram.getTotal() < MIN_TOTAL) {
+			return interval;
+		}
+
+		if (isExpected(histogram, now) || isExpected(histogram, now + LOOKAHEAD)) {
+			return Math.min(interval, EXPECTED_INTERVAL);
+		}
+
+		if (histogram.getCount(now) == 0 && histogram.getCount(now + LOOKAHEAD) == 0) {
+			return Math.max(interval, Math.min(interval * RELAX_FACTOR, MAX_RELAXED_INTERVAL));
+		}
+
+		return interval;
+	}
+
+	private static boolean isExpected(final GoLiveHistogram histogram, final long time) {
+		return histogram.getCount(time) >= MIN_COUNT && histogram.getShare(time) >= MIN_SHARE;
+	}
+}
@@ -26,13 +26,29 @@ import eu.over9000.cathode.Result;
 import eu.over9000.cathode.data.Stream;
 import eu.over9000.cathode.data.StreamBox;
 import eu.over9000.skadi.model.Channel;
+import eu.over9000.skadi.remote.data.BatchMetadata;
 import eu.over9000.skadi.remote.data.ChannelMetadata;
 import eu.over9000.skadi.util.ImageUtil;
 import eu.over9000.skadi.util.TwitchUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * This class provides static methods to retrieve channel/stream info from the twitch API.
@@ -40,10 +56,12 @@ import java.util.Date;
 public class ChannelDataRetriever {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ChannelDataRetriever.class);
 
+	static final int LOOKUP_PARALLELISM = 8;
+
 	public static ChannelMetadata getChannelMetadata(final Channel channel) {
 		ImageUtil.updatePreviewAsyncFromTwitch(channel);
 
-		final Result<StreamBox> streamResponse = TwitchUtil.getTwitch().streams.getStream(channel.getName());
+		final Result<StreamBox> streamResponse = CoalescedRequests.STREAM.execute(CoalescedRequests.key(channel.getName()), () -> TwitchUtil.request(twitch -> twitch.streams.getStream(channel.getName())));
 		if (!streamResponse.isOk()) {
 			LOGGER.error("Exception getting metadata for stream " + channel + ": " + streamResponse.getErrorRaw());
 			return null;
@@ -51,32 +69,93 @@ public class ChannelDataRetriever {
 
 		final StreamBox stream = streamResponse.getResultRaw();
 
-		final eu.over9000.cathode.data.Channel channelObject;
-		final Boolean online = stream.isOnline();
-		final Long uptime;
-		final Long viewer;
+		if (!stream.isOnline()) {
+			return getOfflineChannelMetadata(channel);
+		}
 
-		if (online) {
-			channelObject = stream.getStream().getChannel();
+		return new ChannelMetadata(stream.getStream().getChannel(), stream.getStream().getViewers(), getChannelUptime(stream.getStream()), true);
+	}
 
-			uptime = getChannelUptime(stream.getStream());
-			viewer = stream.getStream().getViewers();
+	/**
+	 * Retrieves the metadata of all given channels. The live status of the channels is resolved with one request per
+	 * {@link StreamBatchClient#PAGE_SIZE} channels, only channels that were not known to be offline before are looked up
+	 * separately to get their title, game and logo, as are stale channels restored from a snapshot. At most {@link #LOOKUP_PARALLELISM} of these lookups are queued on
+	 * the executor, if it rejects them they run on the calling thread.
+	 *
+	 * @return a future completing with the metadata per channel and the outcome of every request that was sent
+	 */
+	public static CompletableFuture<BatchMetadata> getChannelMetadata(final Collection<Channel> channels, final Executor executor) {
+		return getChannelMetadata(channels, executor, ChannelDataRetriever::getLiveMetadata, ChannelDataRetriever::getOfflineChannelMetadata, ImageUtil::updatePreviewAsyncFromTwitch);
+	}
 
-		} else {
-			final Result<eu.over9000.cathode.data.Channel> channelResponse = TwitchUtil.getTwitch().channels.getChannel(channel.getName());
-			if (!channelResponse.isOk()) {
-				LOGGER.error("Exception getting metadata for channel " + channel + ": " + channelResponse.getErrorRaw());
-				return null;
+	static CompletableFuture<BatchMetadata> getChannelMetadata(final Collection<Channel> channels, final Executor executor, final Function<Collection<Channel>, Map<String, ChannelMetadata>> liveLookup, final Function<Channel, ChannelMetadata> channelLookup, final Consumer<Channel> previewUpdate) {
+		return CompletableFuture.supplyAsync(() -> liveLookup.apply(channels), executor).thenCompose(live -> {
+			final Map<Channel, ChannelMetadata> result = new ConcurrentHashMap<>();
+			if (live == null) {
+				return CompletableFuture.completedFuture(new BatchMetadata(result, 0, 1));
+			}
+			final int pages = (channels.size() + StreamBatchClient.PAGE_SIZE - 1) / StreamBatchClient.PAGE_SIZE;
+
+			final Queue<Channel> lookups = new ConcurrentLinkedQueue<>();
+
+			channels.forEach(channel -> {
+				final ChannelMetadata liveMetadata = live.get(channel.getKey().getName());
+				if (liveMetadata != null) {
+					previewUpdate.accept(channel);
+					result.put(channel, liveMetadata);
+				} else if (Boolean.FALSE.equals(channel.isOnline()) && !channel.isStale()) {
+					result.put(channel, ChannelMetadata.stillOffline());
+				} else {
+					previewUpdate.accept(channel);
+					lookups.add(channel);
+				}
+			});
+
+			final int lookupCount = lookups.size();
+			final AtomicInteger failed = new AtomicInteger();
+			final Runnable worker = () -> {
+				Channel channel;
+				while ((channel = lookups.poll()) != null) {
+					final ChannelMetadata metadata = channelLookup.apply(channel);
+					if (metadata != null) {
+						result.put(channel, metadata);
+					} else {
+						failed.incrementAndGet();
+					}
+				}
+			};
+
+			final List<CompletableFuture<Void>> workers = new ArrayList<>();
+			for (int i = 0; i < Math.min(LOOKUP_PARALLELISM, lookupCount); i++) {
+				try {
+					workers.add(CompletableFuture.runAsync(worker, executor));
+				} catch (final RejectedExecutionException e) {
+					worker.run();
+				}
 			}
 
-			channelObject = channelResponse.getResultRaw();
+			return CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[workers.size()])).thenApply(v -> new BatchMetadata(result, pages + lookupCount - failed.get(), failed.get()));
+		});
+	}
 
-			uptime = 0L;
-			viewer = 0L;
+	private static Map<String, ChannelMetadata> getLiveMetadata(final Collection<Channel> channels) {
+		final List<String> names = channels.stream().map(Channel::getName).collect(Collectors.toList());
+		try {
+			return TwitchUtil.getStreamBatchClient().getLiveStreams(names);
+		} catch (final IOException e) {
+			LOGGER.error("Exception getting batched stream status for " + names.size() + " channels", e);
+			return null;
 		}
+	}
 
-		return new ChannelMetadata(channelObject, viewer, uptime, online);
+	private static ChannelMetadata getOfflineChannelMetadata(final Channel channel) {
+		final Result<eu.over9000.cathode.data.Channel> channelResponse = getChannel(channel.getName());
+		if (!channelResponse.isOk()) {
+			LOGGER.error("Exception getting metadata for channel " + channel + ": " + channelResponse.getErrorRaw());
+			return null;
+		}
 
+		return new ChannelMetadata(channelResponse.getResultRaw(), 0L, 0L, false);
 	}
 
 	private static long getChannelUptime(final Stream stream) {
@@ -86,8 +165,12 @@ public class ChannelDataRetriever {
 		return nowDate.getTime() - startDate.getTime();
 	}
 
+	private static Result<eu.over9000.cathode.data.Channel> getChannel(final String channel) {
+		return CoalescedRequests.CHANNEL.execute(CoalescedRequests.key(channel), () -> TwitchUtil.request(twitch -> twitch.channels.getChannel(channel)));
+	}
+
 	public static boolean checkIfChannelExists(final String channel) {
-		return TwitchUtil.getTwitch().channels.getChannel(channel).isOk();
+		return getChannel(channel).isOk();
 	}
 
 }
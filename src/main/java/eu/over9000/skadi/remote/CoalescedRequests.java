@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote;
+
+import eu.over9000.cathode.Result;
+import eu.over9000.cathode.data.ChannelEmoticonList;
+import eu.over9000.cathode.data.PanelList;
+import eu.over9000.cathode.data.StreamBox;
+import eu.over9000.skadi.model.ChannelKey;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The per endpoint {@link SingleFlight}s of the channel specific API requests, keyed by channel name.
+ */
+public final class CoalescedRequests {
+
+	static final SingleFlight<String, Result<StreamBox>> STREAM = new SingleFlight<>();
+	static final SingleFlight<String, Result<eu.over9000.cathode.data.Channel>> CHANNEL = new SingleFlight<>();
+	static final SingleFlight<String, Result<PanelList>> PANELS = new SingleFlight<>();
+	static final SingleFlight<String, Result<ChannelEmoticonList>> EMOTES = new SingleFlight<>();
+
+	private static final List<SingleFlight<String, ?>> ALL = Arrays.asList(STREAM, CHANNEL, PANELS, EMOTES);
+
+	private CoalescedRequests() {
+	}
+
+	static String key(final String channel) {
+		return ChannelKey.of(channel).getName();
+	}
+
+	public static long getExecutedCount() {
+		return ALL.stream().mapToLong(SingleFlight::getExecutedCount).sum();
+	}
+
+	public static long getCoalescedCount() {
+		return ALL.stream().mapToLong(SingleFlight::getCoalescedCount).sum();
+	}
+}
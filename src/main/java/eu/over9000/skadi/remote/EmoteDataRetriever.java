@@ -25,10 +25,13 @@ package eu.over9000.skadi.remote;
 import eu.over9000.cathode.Result;
 import eu.over9000.cathode.data.ChannelEmoticon;
 import eu.over9000.cathode.data.ChannelEmoticonList;
-import eu.over9000.skadi.service.ImageRetrievalService;
 import eu.over9000.skadi.ui.label.CopyableLabel;
+import eu.over9000.skadi.util.ExecutorUtil;
+import eu.over9000.skadi.util.ImageUtil;
 import eu.over9000.skadi.util.TwitchUtil;
+import eu.over9000.skadi.util.Workload;
 import javafx.geometry.Pos;
+import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 import org.slf4j.Logger;
@@ -36,7 +39,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class EmoteDataRetriever {
@@ -46,7 +50,7 @@ public class EmoteDataRetriever {
 	private static List<ChannelEmoticon> retrieveEmotes(final String channel) {
 		final List<ChannelEmoticon> result = new ArrayList<>();
 
-		final Result<ChannelEmoticonList> emoteResponse = TwitchUtil.getTwitch().chat.getEmoticons(channel);
+		final Result<ChannelEmoticonList> emoteResponse = CoalescedRequests.EMOTES.execute(CoalescedRequests.key(channel), () -> TwitchUtil.request(twitch -> twitch.chat.getEmoticons(channel)));
 
 		if (!emoteResponse.isOk()) {
 			LOGGER.error("error getting emote data for " + channel + ": ", emoteResponse.getErrorRaw());
@@ -58,42 +62,34 @@ public class EmoteDataRetriever {
 		return result;
 	}
 
-	public static List<HBox> buildEmotePanel(final String channel) {
-		final List<ChannelEmoticon> emotes = retrieveEmotes(channel);
-		final List<HBox> result = new ArrayList<>(emotes.size());
-		final CountDownLatch latch = new CountDownLatch(emotes.size());
-
-		emotes.forEach(emote -> {
-
-			final ImageRetrievalService imageService = new ImageRetrievalService(emote.getUrl());
-			imageService.setOnSucceeded(event -> {
-				final ImageView img = (ImageView) event.getSource().getValue();
-				final CopyableLabel lbl = new CopyableLabel(emote.getRegex());
-				final HBox box = new HBox(2, lbl, img);
-				box.setAlignment(Pos.CENTER_LEFT);
-				box.setStyle("-fx-background-color: -fx-control-inner-background");
-				result.add(box);
-				latch.countDown();
-			});
-			imageService.setOnFailed(event -> {
-				final CopyableLabel lbl = new CopyableLabel(emote.getRegex());
-				final HBox box = new HBox(2, lbl);
-				box.setStyle("-fx-background-color: -fx-control-inner-background");
-				box.setAlignment(Pos.CENTER_LEFT);
-				result.add(box);
-				latch.countDown();
-			});
-			imageService.start();
+	/**
+	 * Retrieves the subscriber emotes of the channel and passes each emote to the consumer as soon as its image is
+	 * loaded. Emotes whose image can not be loaded are passed without image.
+	 *
+	 * @return a future completing once all emotes have been passed to the consumer
+	 */
+	public static CompletableFuture<Void> buildEmotePanel(final String channel, final Consumer<HBox> consumer) {
+		return CompletableFuture.supplyAsync(() -> retrieveEmotes(channel), ExecutorUtil.getExecutor(Workload.DETAIL_PANE)).thenCompose(emotes -> {
+			final CompletableFuture<?>[] boxes = emotes.stream().map(emote -> CompletableFuture.supplyAsync(() -> ImageUtil.getImageInternal(emote.getUrl()), ExecutorUtil.getExecutor(Workload.IMAGES))
+					.handle((image, throwable) -> buildEmoteBox(emote, image))
+					.thenAccept(consumer)).toArray(CompletableFuture<?>[]::new);
+			return CompletableFuture.allOf(boxes);
 		});
+	}
 
-		try {
-			latch.await();
-		} catch (final InterruptedException e) {
-			LOGGER.error("error in emote list retrieval: ", e);
+	private static HBox buildEmoteBox(final ChannelEmoticon emote, final Image image) {
+		final CopyableLabel lbl = new CopyableLabel(emote.getRegex());
+		final HBox box;
+		if (image == null) {
+			box = new HBox(2, lbl);
+		} else {
+			final ImageView img = new ImageView(image);
+			img.setSmooth(true);
+			img.setCache(true);
+			box = new HBox(2, lbl, img);
 		}
-
-		return result;
-
+		box.setAlignment(Pos.CENTER_LEFT);
+		box.setStyle("-fx-background-color: -fx-control-inner-background");
+		return box;
 	}
-
 }
@@ -26,15 +26,18 @@ import eu.over9000.cathode.Result;
 import eu.over9000.cathode.data.Panel;
 import eu.over9000.cathode.data.PanelData;
 import eu.over9000.cathode.data.PanelList;
-import eu.over9000.skadi.service.PanelConstructionService;
+import eu.over9000.skadi.util.ExecutorUtil;
+import eu.over9000.skadi.util.PanelUtil;
 import eu.over9000.skadi.util.TwitchUtil;
+import eu.over9000.skadi.util.Workload;
 import javafx.scene.layout.VBox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class PanelDataRetriever {
 
@@ -43,7 +46,7 @@ public class PanelDataRetriever {
 	private static List<PanelData> retrievePanels(final String channel) {
 		final List<PanelData> result = new ArrayList<>();
 
-		final Result<PanelList> panelResponse = TwitchUtil.getTwitch().undocumented.getPanels(channel);
+		final Result<PanelList> panelResponse = CoalescedRequests.PANELS.execute(CoalescedRequests.key(channel), () -> TwitchUtil.request(twitch -> twitch.undocumented.getPanels(channel)));
 
 		if (!panelResponse.isOk()) {
 			LOGGER.error("error getting panels data for " + channel + ": ", panelResponse.getErrorRaw());
@@ -55,33 +58,20 @@ public class PanelDataRetriever {
 		return result;
 	}
 
-	public static List<VBox> buildPanels(final String channel) {
-		final List<PanelData> panels = retrievePanels(channel);
-		final List<VBox> result = new ArrayList<>(panels.size());
-
-		final CountDownLatch latch = new CountDownLatch(panels.size());
-
-		panels.forEach(panel -> {
-			final PanelConstructionService service = new PanelConstructionService(panel);
-			service.setOnSucceeded(event -> {
-				final VBox panelBox = (VBox) event.getSource().getValue();
-				result.add(panelBox);
-				latch.countDown();
-			});
-			service.setOnFailed(event -> {
-				latch.countDown();
-			});
-			service.start();
+	/**
+	 * Retrieves the panels of the channel and passes each panel to the consumer as soon as it is built.
+	 *
+	 * @return a future completing once all panels have been passed to the consumer
+	 */
+	public static CompletableFuture<Void> buildPanels(final String channel, final Consumer<VBox> consumer) {
+		return CompletableFuture.supplyAsync(() -> retrievePanels(channel), ExecutorUtil.getExecutor(Workload.DETAIL_PANE)).thenCompose(panels -> {
+			final CompletableFuture<?>[] built = panels.stream().map(panel -> CompletableFuture.supplyAsync(() -> PanelUtil.buildPanel(panel), ExecutorUtil.getExecutor(Workload.PANEL_CONSTRUCTION))
+					.thenAccept(consumer)
+					.exceptionally(throwable -> {
+						LOGGER.error("error building panel for " + channel, throwable);
+						return null;
+					})).toArray(CompletableFuture<?>[]::new);
+			return CompletableFuture.allOf(built);
 		});
-
-		try {
-			latch.await();
-		} catch (final InterruptedException e) {
-			LOGGER.error("error waiting for panel construction: ", e);
-		}
-
-		return result;
 	}
-
-
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket shared by all requests to the twitch API. Callers that find the bucket empty reserve the next free
+ * token and sleep until it is available, so waiting callers are served in arrival order and the request rate stays at
+ * the configured limit instead of running into the limits of the API.
+ */
+public class RequestRateLimiter {
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final AtomicLong acquired = new AtomicLong();
+	private final AtomicLong delayed = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	private double rate;
+	private double burst;
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 * @param rate
+	 * 		the sustained number of requests per second
+	 * @param burst
+	 * 		the number of requests that can be made at once after an idle period
+	 */
+	public RequestRateLimiter(final double rate, final int burst) {
+		configure(rate, burst);
+		tokens = this.burst;
+		lastRefill = System.nanoTime();
+	}
+
+	public synchronized void configure(final double rate, final int burst) {
+		if (rate <= 0 || burst < 1) {
+			throw new IllegalArgumentException("invalid rate limit: " + rate + "/s, burst " + burst);
+		}
+		refill(System.nanoTime());
+		this.rate = rate;
+		this.burst = burst;
+		tokens = Math.min(tokens, burst);
+	}
+
+	/**
+	 * Blocks until the caller may send one request.
+	 */
+	public void acquire() {
+		final long waitNanos = reserve();
+		acquired.incrementAndGet();
+
+		if (waitNanos <= 0) {
+			return;
+		}
+
+		delayed.incrementAndGet();
+		totalWaitNanos.addAndGet(waitNanos);
+		maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+
+		waiting.incrementAndGet();
+		try {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			waiting.decrementAndGet();
+		}
+	}
+
+	private synchronized long reserve() {
+		final long now = System.nanoTime();
+		refill(now);
+		tokens -= 1;
+		return tokens >= 0 ? 0 : (long) (-tokens / rate * NANOS_PER_SECOND);
+	}
+
+	private void refill(final long now) {
+		tokens = Math.min(burst, tokens + (now - lastRefill) * rate / NANOS_PER_SECOND);
+		lastRefill = now;
+	}
+
+	/**
+	 * @return the number of callers currently waiting for a token
+	 */
+	public int getQueueLength() {
+		return waiting.get();
+	}
+
+	public long getAcquiredCount() {
+		return acquired.get();
+	}
+
+	public long getDelayedCount() {
+		return delayed.get();
+	}
+
+	/**
+	 * @return the average wait of the delayed requests in milliseconds
+	 */
+	public long getAverageWait() {
+		final long count = delayed.get();
+		return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count);
+	}
+
+	/**
+	 * @return the longest wait of a request in milliseconds
+	 */
+	public long getMaxWait() {
+		return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+	}
+}
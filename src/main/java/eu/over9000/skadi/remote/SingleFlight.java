@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent requests. While a request for a key is running, further callers with the same key wait for
+ * that request and get its result instead of sending their own. Results are not cached once the request is finished.
+ *
+ * @param <K>
+ * 		the request key
+ * @param <V>
+ * 		the result type
+ */
+public class SingleFlight<K, V> {
+
+	private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final AtomicLong executed = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+
+	public V execute(final K key, final Supplier<V> request) {
+		final CompletableFuture<V> own = new CompletableFuture<>();
+		final CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+
+		if (running != null) {
+			coalesced.incrementAndGet();
+			try {
+				return running.join();
+			} catch (final CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+
+		executed.incrementAndGet();
+		try {
+			final V result = request.get();
+			own.complete(result);
+			return result;
+		} catch (final RuntimeException | Error e) {
+			own.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, own);
+		}
+	}
+
+	/**
+	 * @return the number of requests that were actually sent
+	 */
+	public long getExecutedCount() {
+		return executed.get();
+	}
+
+	/**
+	 * @return the number of callers that shared the result of a request already in flight
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+}
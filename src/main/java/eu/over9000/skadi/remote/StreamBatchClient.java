@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import eu.over9000.skadi.model.ChannelKey;
+import eu.over9000.skadi.remote.data.ChannelMetadata;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.BasicResponseHandler;
+import org.apache.http.impl.client.HttpClients;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the live status of many channels with one request per page against the streams endpoint of the twitch API.
+ */
+public class StreamBatchClient {
+
+	public static final String DEFAULT_API_URL = "https://api.twitch.tv/kraken/";
+	public static final int PAGE_SIZE = 100;
+
+	private static final String ACCEPT_HEADER = "application/vnd.twitchtv.v3+json";
+
+	private final HttpClient httpClient = HttpClients.createMinimal();
+	private final JsonParser parser = new JsonParser();
+	private final String apiUrl;
+	private final String clientId;
+	private final RequestRateLimiter rateLimiter;
+
+	public StreamBatchClient(final String apiUrl, final String clientId, final RequestRateLimiter rateLimiter) {
+		this.apiUrl = apiUrl.endsWith("/") ? apiUrl : apiUrl + "/";
+		this.clientId = clientId;
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * Queries the given channels in pages of {@link #PAGE_SIZE}.
+	 *
+	 * @return the metadata of all channels that are currently live, keyed by the lower case channel name. Channels missing
+	 * in the result are offline.
+	 * @throws IOException if one of the pages could not be retrieved
+	 */
+	public Map<String, ChannelMetadata> getLiveStreams(final Collection<String> channels) throws IOException {
+		final Map<String, ChannelMetadata> result = new HashMap<>();
+		final List<String> names = new ArrayList<>(channels);
+
+		for (int from = 0; from < names.size(); from += PAGE_SIZE) {
+			final List<String> page = names.subList(from, Math.min(from + PAGE_SIZE, names.size()));
+			result.putAll(getLiveStreamsPage(page));
+		}
+
+		return result;
+	}
+
+	private Map<String, ChannelMetadata> getLiveStreamsPage(final List<String> page) throws IOException {
+		final HttpGet request;
+		try {
+			request = new HttpGet(new URIBuilder(apiUrl + "streams").addParameter("channel", String.join(",", page)).addParameter("limit", String.valueOf(PAGE_SIZE)).build());
+		} catch (final URISyntaxException e) {
+			throw new IOException("invalid stream batch url", e);
+		}
+		request.addHeader("Accept", ACCEPT_HEADER);
+		request.addHeader("Client-ID", clientId);
+
+		rateLimiter.acquire();
+		final HttpResponse response = httpClient.execute(request);
+		final String responseString = new BasicResponseHandler().handleResponse(response);
+
+		final Map<String, ChannelMetadata> result = new HashMap<>();
+		final long now = System.currentTimeMillis();
+
+		for (final JsonElement element : parser.parse(responseString).getAsJsonObject().getAsJsonArray("streams")) {
+			final JsonObject stream = element.getAsJsonObject();
+			final JsonObject channel = stream.getAsJsonObject("channel");
+
+			final String name = ChannelKey.of(channel.get("name").getAsString()).getName();
+			final long viewer = stream.get("viewers").getAsLong();
+			final long uptime = now - Instant.parse(stream.get("created_at").getAsString()).toEpochMilli();
+
+			result.put(name, new ChannelMetadata(getString(channel, "status"), viewer, uptime, true, getString(channel, "game"), getString(channel, "logo"), getLong(channel, "followers"), getLong(channel, "views"), getBoolean(channel, "partner")));
+		}
+
+		return result;
+	}
+
+	private static String getString(final JsonObject object, final String member) {
+		final JsonElement element = object.get(member);
+		return element == null || element.isJsonNull() ? null : element.getAsString();
+	}
+
+	private static Long getLong(final JsonObject object, final String member) {
+		final JsonElement element = object.get(member);
+		return element == null || element.isJsonNull() ? null : element.getAsLong();
+	}
+
+	private static Boolean getBoolean(final JsonObject object, final String member) {
+		final JsonElement element = object.get(member);
+		return element == null || element.isJsonNull() ? null : element.getAsBoolean();
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote.data;
+
+import eu.over9000.skadi.model.Channel;
+
+import java.util.Map;
+
+/**
+ * The result of a batched channel update: the metadata per channel and how many of the HTTP requests sent for it
+ * succeeded or failed.
+ */
+public class BatchMetadata {
+	private final Map<Channel, ChannelMetadata> metadata;
+	private final int succeededRequests;
+	private final int failedRequests;
+
+	public BatchMetadata(final Map<Channel, ChannelMetadata> metadata, final int succeededRequests, final int failedRequests) {
+		this.metadata = metadata;
+		this.succeededRequests = succeededRequests;
+		this.failedRequests = failedRequests;
+	}
+
+	/**
+	 * @return the metadata per channel, channels whose lookup failed are missing
+	 */
+	public Map<Channel, ChannelMetadata> getMetadata() {
+		return metadata;
+	}
+
+	public int getSucceededRequests() {
+		return succeededRequests;
+	}
+
+	public int getFailedRequests() {
+		return failedRequests;
+	}
+}
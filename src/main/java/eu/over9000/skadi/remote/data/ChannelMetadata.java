@@ -34,17 +34,62 @@ public class ChannelMetadata {
 	private final Long followers;
 	private final Long views;
 	private final Boolean partner;
+	private final boolean partial;
 
 	public ChannelMetadata(final Channel channel, final Long viewer, final Long uptime, final Boolean online) {
-		this.title = channel.getStatus();
+		this(channel.getStatus(), viewer, uptime, online, channel.getGame(), channel.getLogo(), channel.getFollowers(), channel.getViews(), channel.isPartner());
+	}
+
+	public ChannelMetadata(final String title, final Long viewer, final Long uptime, final Boolean online, final String game, final String logoURL, final Long followers, final Long views, final Boolean partner) {
+		this(title, viewer, uptime, online, game, logoURL, followers, views, partner, false);
+	}
+
+	private ChannelMetadata(final String title, final Long viewer, final Long uptime, final Boolean online, final String game, final String logoURL, final Long followers, final Long views, final Boolean partner, final boolean partial) {
+		this.title = title;
 		this.viewer = viewer;
 		this.uptime = uptime;
 		this.online = online;
-		this.game = channel.getGame();
-		this.logoURL = channel.getLogo();
-		this.followers = channel.getFollowers();
-		this.views = channel.getViews();
-		this.partner = channel.isPartner();
+		this.game = game;
+		this.logoURL = logoURL;
+		this.followers = followers;
+		this.views = views;
+		this.partner = partner;
+		this.partial = partial;
+	}
+
+	/**
+	 * Metadata for a channel that was offline before and still is, only the online state, viewers and uptime are set.
+	 */
+	public static ChannelMetadata stillOffline() {
+		return new ChannelMetadata(null, 0L, 0L, false, null, null, null, null, null, true);
+	}
+
+	/**
+	 * Metadata for a channel that just went live, title and game are unknown until the channel is polled.
+	 */
+	public static ChannelMetadata wentOnline(final long uptime) {
+		return new ChannelMetadata(null, null, uptime, true, null, null, null, null, null, true);
+	}
+
+	/**
+	 * Metadata that only updates the viewer count of a live channel.
+	 */
+	public static ChannelMetadata viewerCount(final long viewer) {
+		return new ChannelMetadata(null, viewer, null, null, null, null, null, null, null, true);
+	}
+
+	/**
+	 * Combines two partial updates, every field set in the newer metadata replaces the one of this.
+	 */
+	public ChannelMetadata mergedWith(final ChannelMetadata newer) {
+		return new ChannelMetadata(newer.hasTitle() ? newer.title : title, newer.hasViewer() ? newer.viewer : viewer, newer.hasUptime() ? newer.uptime : uptime, newer.hasOnline() ? newer.online : online, newer.hasGame() ? newer.game : game, newer.hasLogoURL() ? newer.logoURL : logoURL, newer.hasFollowers() ? newer.followers : followers, newer.hasViews() ? newer.views : views, newer.hasPartner() ? newer.partner : partner, partial && newer.partial);
+	}
+
+	/**
+	 * @return true if this is a partial update that leaves title, game and logo untouched
+	 */
+	public boolean isPartial() {
+		return partial;
 	}
 
 	// -------------------------------
@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote.pubsub;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import eu.over9000.skadi.model.ChannelKey;
+import eu.over9000.skadi.util.ExecutorUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listens to the video-playback topics of the subscribed channels on the twitch pubsub server. The server accepts at
+ * most {@link #MAX_TOPICS_PER_CONNECTION} topics per connection, so the channels are spread over up to
+ * {@link #MAX_CONNECTIONS} connections, channels beyond that are not listened to. Each connection is kept alive with
+ * pings and reopened with an increasing delay when it is lost, after a reconnect its topics are subscribed again.
+ */
+public class PubSubClient {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PubSubClient.class);
+
+	public static final URI DEFAULT_URI = URI.create("wss://pubsub-edge.twitch.tv");
+
+	static final int MAX_TOPICS_PER_CONNECTION = 50;
+	static final int MAX_CONNECTIONS = 10;
+
+	private static final String TOPIC_PREFIX = "video-playback.";
+	private static final int CONNECT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(10);
+	private static final long PING_INTERVAL = TimeUnit.MINUTES.toMillis(4);
+	private static final long PONG_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+	private static final long MIN_RECONNECT_DELAY = TimeUnit.SECONDS.toMillis(1);
+	private static final long MAX_RECONNECT_DELAY = TimeUnit.MINUTES.toMillis(2);
+
+	/**
+	 * Receives the events of the subscribed channels, called from the connection threads.
+	 */
+	public interface Listener {
+		void onStreamUp(String channel, long serverTime);
+
+		void onStreamDown(String channel);
+
+		void onViewCount(String channel, long viewers);
+
+		/**
+		 * Called with true once the server acknowledged listening to the channel, with false when the connection
+		 * listening to it was lost or the channel was unsubscribed.
+		 */
+		void onListening(String channel, boolean listening);
+	}
+
+	private final URI uri;
+	private final Listener listener;
+	private final long pingInterval;
+
+	private final AtomicLong nonce = new AtomicLong();
+
+	// guarded by this
+	private final List<Connection> connections = new ArrayList<>();
+	private final Set<String> unassigned = new LinkedHashSet<>();
+	private boolean running;
+	private ScheduledFuture<?> pingFuture;
+
+	public PubSubClient(final URI uri, final Listener listener) {
+		this(uri, listener, PING_INTERVAL);
+	}
+
+	PubSubClient(final URI uri, final Listener listener, final long pingInterval) {
+		this.uri = uri;
+		this.listener = listener;
+		this.pingInterval = pingInterval;
+	}
+
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		connections.forEach(Connection::start);
+		pingFuture = ExecutorUtil.getSchedulerService().scheduleWithFixedDelay(this::ping, pingInterval, pingInterval, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		pingFuture.cancel(false);
+		connections.forEach(Connection::stop);
+	}
+
+	/**
+	 * @return true if at least one connection is open
+	 */
+	public synchronized boolean isConnected() {
+		return connections.stream().anyMatch(connection -> connection.webSocket != null);
+	}
+
+	synchronized int getConnectionCount() {
+		return connections.size();
+	}
+
+	public synchronized void subscribe(final String channel) {
+		final String name = ChannelKey.of(channel).getName();
+		if (unassigned.contains(name) || connections.stream().anyMatch(connection -> connection.channels.contains(name))) {
+			return;
+		}
+
+		Connection target = connections.stream().filter(connection -> connection.channels.size() < MAX_TOPICS_PER_CONNECTION).findFirst().orElse(null);
+		if (target == null && connections.size() < MAX_CONNECTIONS) {
+			target = new Connection(connections.size());
+			connections.add(target);
+			if (running) {
+				target.start();
+			}
+		}
+
+		if (target == null) {
+			LOGGER.debug("all pubsub connections are full, not listening to " + name);
+			unassigned.add(name);
+		} else {
+			target.listen(name);
+		}
+	}
+
+	public synchronized void unsubscribe(final String channel) {
+		final String name = ChannelKey.of(channel).getName();
+		if (unassigned.remove(name)) {
+			return;
+		}
+
+		for (final Iterator<Connection> iterator = connections.iterator(); iterator.hasNext(); ) {
+			final Connection connection = iterator.next();
+			if (connection.channels.contains(name)) {
+				connection.unlisten(name);
+				if (!unassigned.isEmpty()) {
+					final String next = unassigned.iterator().next();
+					unassigned.remove(next);
+					connection.listen(next);
+				} else if (connection.channels.isEmpty()) {
+					connection.stop();
+					iterator.remove();
+				}
+				return;
+			}
+		}
+	}
+
+	private void ping() {
+		final List<Connection> current;
+		synchronized (this) {
+			current = new ArrayList<>(connections);
+		}
+		current.forEach(Connection::ping);
+	}
+
+	private static JsonArray topics(final Collection<String> channels) {
+		final JsonArray topics = new JsonArray();
+		channels.forEach(channel -> topics.add(TOPIC_PREFIX + channel));
+		return topics;
+	}
+
+	/**
+	 * One websocket connection listening to at most {@link #MAX_TOPICS_PER_CONNECTION} channels.
+	 */
+	private final class Connection {
+
+		private final int index;
+		private final Set<String> channels = ConcurrentHashMap.newKeySet();
+		private final Set<String> acknowledged = ConcurrentHashMap.newKeySet();
+		// the channels of the LISTEN requests not answered yet, by nonce
+		private final Map<String, Collection<String>> pendingListens = new ConcurrentHashMap<>();
+
+		private volatile WebSocket webSocket;
+		private volatile long lastPong;
+		// the thread currently owning the connection, a stopped thread exits once it notices it was replaced
+		private volatile Thread thread;
+		// the last stopped thread, a new thread waits for it so they never share the connection state
+		private Thread stoppedThread;
+
+		private Connection(final int index) {
+			this.index = index;
+		}
+
+		private void start() {
+			final Thread previous = stoppedThread;
+			final Thread started = new Thread(() -> {
+				if (awaitExit(previous)) {
+					run();
+				}
+			}, "PubSub connection " + index);
+			started.setDaemon(true);
+			thread = started;
+			started.start();
+		}
+
+		private void stop() {
+			final Thread stopped = thread;
+			thread = null;
+			if (stopped != null) {
+				stopped.interrupt();
+				stoppedThread = stopped;
+			}
+			closeQuietly();
+		}
+
+		private boolean isCurrent() {
+			return thread == Thread.currentThread();
+		}
+
+		/**
+		 * @return false if the current thread was stopped while waiting
+		 */
+		private boolean awaitExit(final Thread previous) {
+			if (previous != null) {
+				try {
+					previous.join();
+				} catch (final InterruptedException e) {
+					return false;
+				}
+			}
+			return isCurrent();
+		}
+
+		private void listen(final String name) {
+			if (channels.add(name)) {
+				send("LISTEN", Collections.singleton(name));
+			}
+		}
+
+		private void unlisten(final String name) {
+			if (channels.remove(name)) {
+				if (acknowledged.remove(name)) {
+					listener.onListening(name, false);
+				}
+				send("UNLISTEN", Collections.singleton(name));
+			}
+		}
+
+		private void run() {
+			long delay = MIN_RECONNECT_DELAY;
+			while (isCurrent()) {
+				try (final WebSocket socket = WebSocket.connect(uri, CONNECT_TIMEOUT)) {
+					webSocket = socket;
+					// stop() closes the socket once it is published, a stop during the connect is noticed here
+					if (isCurrent()) {
+						lastPong = System.currentTimeMillis();
+						if (!channels.isEmpty()) {
+							send("LISTEN", new ArrayList<>(channels));
+						}
+						LOGGER.info("pubsub connection " + index + " connected, listening to " + channels.size() + " channels");
+						delay = MIN_RECONNECT_DELAY;
+
+						String message;
+						while (isCurrent() && (message = socket.receiveText()) != null) {
+							if (!handle(message)) {
+								break;
+							}
+						}
+					}
+				} catch (final IOException | RuntimeException e) {
+					if (isCurrent()) {
+						LOGGER.warn("pubsub connection " + index + " failed: " + e.getMessage());
+					}
+				}
+
+				webSocket = null;
+				pendingListens.clear();
+				for (final String name : new ArrayList<>(acknowledged)) {
+					acknowledged.remove(name);
+					listener.onListening(name, false);
+				}
+
+				if (isCurrent()) {
+					try {
+						Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+					} catch (final InterruptedException e) {
+						return;
+					}
+					delay = Math.min(MAX_RECONNECT_DELAY, delay * 2);
+				}
+			}
+		}
+
+		/**
+		 * @return false if the connection should be reopened
+		 */
+		private boolean handle(final String message) {
+			final JsonObject json = new JsonParser().parse(message).getAsJsonObject();
+			final String type = json.get("type").getAsString();
+
+			switch (type) {
+				case "PONG":
+					lastPong = System.currentTimeMillis();
+					return true;
+				case "RECONNECT":
+					LOGGER.info("pubsub server requested reconnect of connection " + index);
+					return false;
+				case "RESPONSE":
+					handleResponse(json);
+					return true;
+				case "MESSAGE":
+					handleMessage(json.getAsJsonObject("data"));
+					return true;
+				default:
+					LOGGER.debug("unknown pubsub message: " + message);
+					return true;
+			}
+		}
+
+		private void handleResponse(final JsonObject json) {
+			final JsonElement nonceElement = json.get("nonce");
+			final Collection<String> listened = nonceElement == null || nonceElement.isJsonNull() ? null : pendingListens.remove(nonceElement.getAsString());
+
+			final JsonElement error = json.get("error");
+			if (error != null && !error.isJsonNull() && !error.getAsString().isEmpty()) {
+				LOGGER.warn("pubsub request " + nonceElement + " failed: " + error.getAsString());
+				return;
+			}
+			if (listened != null) {
+				for (final String name : listened) {
+					// the channel may have been unsubscribed while the request was pending
+					if (channels.contains(name) && acknowledged.add(name)) {
+						listener.onListening(name, true);
+					}
+				}
+			}
+		}
+
+		private void handleMessage(final JsonObject data) {
+			final String topic = data.get("topic").getAsString();
+			if (!topic.startsWith(TOPIC_PREFIX)) {
+				return;
+			}
+			final String channel = topic.substring(TOPIC_PREFIX.length());
+			final JsonObject event = new JsonParser().parse(data.get("message").getAsString()).getAsJsonObject();
+
+			switch (event.get("type").getAsString()) {
+				case "stream-up":
+					listener.onStreamUp(channel, (long) (event.get("server_time").getAsDouble() * 1000));
+					break;
+				case "stream-down":
+					listener.onStreamDown(channel);
+					break;
+				case "viewcount":
+					listener.onViewCount(channel, event.get("viewers").getAsLong());
+					break;
+				default:
+					break;
+			}
+		}
+
+		private void ping() {
+			final WebSocket socket = webSocket;
+			if (socket == null) {
+				return;
+			}
+			if (System.currentTimeMillis() - lastPong > pingInterval + PONG_TIMEOUT) {
+				LOGGER.warn("no pong on pubsub connection " + index + ", reconnecting");
+				closeQuietly();
+				return;
+			}
+			send("PING", null);
+		}
+
+		private void send(final String type, final Collection<String> names) {
+			final WebSocket socket = webSocket;
+			if (socket == null) {
+				// sent with all other topics once connected
+				return;
+			}
+
+			final JsonObject request = new JsonObject();
+			request.addProperty("type", type);
+			if (names != null) {
+				final String requestNonce = String.valueOf(nonce.incrementAndGet());
+				request.addProperty("nonce", requestNonce);
+				final JsonObject data = new JsonObject();
+				data.add("topics", topics(names));
+				request.add("data", data);
+				if ("LISTEN".equals(type)) {
+					pendingListens.put(requestNonce, names);
+				}
+			}
+
+			try {
+				socket.sendText(request.toString());
+			} catch (final IOException e) {
+				LOGGER.warn("failed to send " + type + " on pubsub connection " + index + ": " + e.getMessage());
+				closeQuietly();
+			}
+		}
+
+		private void closeQuietly() {
+			final WebSocket socket = webSocket;
+			if (socket != null) {
+				try {
+					socket.close();
+				} catch (final IOException ignored) {
+					// the reader notices the closed socket
+				}
+			}
+		}
+	}
+}
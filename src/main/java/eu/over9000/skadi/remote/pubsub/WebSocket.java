@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote.pubsub;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Locale;
+
+/**
+ * Minimal websocket client (RFC 6455) for text messages, enough for the twitch pubsub protocol. Pings of the server
+ * are answered while reading, there are no extensions and no subprotocols.
+ */
+public class WebSocket implements Closeable {
+
+	public static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+	private static final int OP_CONTINUATION = 0x0;
+	private static final int OP_TEXT = 0x1;
+	private static final int OP_CLOSE = 0x8;
+	private static final int OP_PING = 0x9;
+	private static final int OP_PONG = 0xA;
+
+	private static final int MAX_MESSAGE_SIZE = 1 << 20;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final Socket socket;
+	private final DataInputStream in;
+	private final OutputStream out;
+
+	private WebSocket(final Socket socket) throws IOException {
+		this.socket = socket;
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		out = socket.getOutputStream();
+	}
+
+	/**
+	 * Opens a connection to a ws:// or wss:// uri and performs the opening handshake.
+	 */
+	public static WebSocket connect(final URI uri, final int timeout) throws IOException {
+		final boolean secure = "wss".equalsIgnoreCase(uri.getScheme());
+		final int port = uri.getPort() != -1 ? uri.getPort() : secure ? 443 : 80;
+
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(uri.getHost(), port), timeout);
+			socket.setSoTimeout(timeout);
+			if (secure) {
+				socket = startTls(socket, uri.getHost(), port);
+			}
+			final WebSocket webSocket = new WebSocket(socket);
+			webSocket.handshake(uri);
+			socket.setSoTimeout(0);
+			return webSocket;
+		} catch (final IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Layers TLS over the connected socket, sending the host name for SNI and verifying it against the certificate.
+	 */
+	private static SSLSocket startTls(final Socket socket, final String host, final int port) throws IOException {
+		final SSLSocket sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket, host, port, true);
+		final SSLParameters parameters = sslSocket.getSSLParameters();
+		parameters.setEndpointIdentificationAlgorithm("HTTPS");
+		parameters.setServerNames(Collections.singletonList(new SNIHostName(host)));
+		sslSocket.setSSLParameters(parameters);
+		sslSocket.startHandshake();
+		return sslSocket;
+	}
+
+	private void handshake(final URI uri) throws IOException {
+		final byte[] nonce = new byte[16];
+		RANDOM.nextBytes(nonce);
+		final String key = Base64.getEncoder().encodeToString(nonce);
+		final String path = (uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath()) + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+
+		final String request = "GET " + path + " HTTP/1.1\r\n" +
+				"Host: " + uri.getHost() + (uri.getPort() != -1 ? ":" + uri.getPort() : "") + "\r\n" +
+				"Upgrade: websocket\r\n" +
+				"Connection: Upgrade\r\n" +
+				"Sec-WebSocket-Key: " + key + "\r\n" +
+				"Sec-WebSocket-Version: 13\r\n\r\n";
+		out.write(request.getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+
+		final String status = readLine(in);
+		if (!status.startsWith("HTTP/1.1 101")) {
+			throw new IOException("websocket handshake failed: " + status);
+		}
+
+		String accept = null;
+		String line;
+		while (!(line = readLine(in)).isEmpty()) {
+			final int colon = line.indexOf(':');
+			if (colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.ENGLISH).equals("sec-websocket-accept")) {
+				accept = line.substring(colon + 1).trim();
+			}
+		}
+		if (!acceptKey(key).equals(accept)) {
+			throw new IOException("websocket handshake failed: invalid accept key " + accept);
+		}
+	}
+
+	/**
+	 * @return the value of the Sec-WebSocket-Accept header for the given key
+	 */
+	public static String acceptKey(final String key) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-1").digest((key + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+			return Base64.getEncoder().encodeToString(digest);
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads a CRLF terminated line of the http header.
+	 */
+	public static String readLine(final InputStream in) throws IOException {
+		final ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != '\n') {
+			if (b == -1) {
+				throw new EOFException("connection closed during handshake");
+			}
+			if (b != '\r') {
+				line.write(b);
+			}
+		}
+		return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+	}
+
+	public void sendText(final String text) throws IOException {
+		sendFrame(OP_TEXT, text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private synchronized void sendFrame(final int opcode, final byte[] payload) throws IOException {
+		final ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + 14);
+		frame.write(0x80 | opcode);
+		if (payload.length < 126) {
+			frame.write(0x80 | payload.length);
+		} else if (payload.length <= 0xFFFF) {
+			frame.write(0x80 | 126);
+			frame.write(payload.length >>> 8);
+			frame.write(payload.length);
+		} else {
+			frame.write(0x80 | 127);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				frame.write((int) ((long) payload.length >>> shift));
+			}
+		}
+
+		// client frames are always masked
+		final byte[] mask = new byte[4];
+		RANDOM.nextBytes(mask);
+		frame.write(mask);
+		for (int i = 0; i < payload.length; i++) {
+			frame.write(payload[i] ^ mask[i & 3]);
+		}
+
+		out.write(frame.toByteArray());
+		out.flush();
+	}
+
+	/**
+	 * Blocks until the next text message arrives.
+	 *
+	 * @return the message or null if the server closed the connection
+	 */
+	public String receiveText() throws IOException {
+		final ByteArrayOutputStream message = new ByteArrayOutputStream();
+		boolean inMessage = false;
+
+		while (true) {
+			final int b0 = in.read();
+			if (b0 == -1) {
+				return null;
+			}
+			final boolean fin = (b0 & 0x80) != 0;
+			final int opcode = b0 & 0x0F;
+			final byte[] payload = readPayload();
+
+			switch (opcode) {
+				case OP_PING:
+					sendFrame(OP_PONG, payload);
+					break;
+				case OP_PONG:
+					break;
+				case OP_CLOSE:
+					try {
+						sendFrame(OP_CLOSE, new byte[0]);
+					} catch (final IOException ignored) {
+						// the server may already be gone
+					}
+					return null;
+				case OP_TEXT:
+				case OP_CONTINUATION:
+					if (opcode == OP_TEXT || inMessage) {
+						message.write(payload);
+						inMessage = !fin;
+						if (fin) {
+							return new String(message.toByteArray(), StandardCharsets.UTF_8);
+						}
+					}
+					break;
+				default:
+					// binary messages are not used by pubsub, skip them
+					break;
+			}
+			if (message.size() > MAX_MESSAGE_SIZE) {
+				throw new IOException("websocket message exceeds " + MAX_MESSAGE_SIZE + " bytes");
+			}
+		}
+	}
+
+	private byte[] readPayload() throws IOException {
+		final int b1 = in.readUnsignedByte();
+		final boolean masked = (b1 & 0x80) != 0;
+		long length = b1 & 0x7F;
+		if (length == 126) {
+			length = in.readUnsignedShort();
+		} else if (length == 127) {
+			length = in.readLong();
+		}
+		if (length < 0 || length > MAX_MESSAGE_SIZE) {
+			throw new IOException("invalid websocket frame length " + length);
+		}
+
+		final byte[] mask = new byte[4];
+		if (masked) {
+			in.readFully(mask);
+		}
+		final byte[] payload = new byte[(int) length];
+		in.readFully(payload);
+		if (masked) {
+			for (int i = 0; i < payload.length; i++) {
+				payload[i] ^= mask[i & 3];
+			}
+		}
+		return payload;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			sendFrame(OP_CLOSE, new byte[0]);
+		} catch (final IOException ignored) {
+			// closing anyway
+		} finally {
+			socket.close();
+		}
+	}
+}
@@ -39,7 +39,7 @@ public class CheckAuthService extends AbstractSkadiService<RootBox> {
 			@Override
 			protected RootBox call() throws Exception {
 
-				final Result<RootBox> result = TwitchUtil.getTwitch().root.getRoot();
+				final Result<RootBox> result = TwitchUtil.request(twitch -> twitch.root.getRoot());
 
 				if (result.isOk()) {
 					return result.getResultRaw();
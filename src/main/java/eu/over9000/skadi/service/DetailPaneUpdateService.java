@@ -22,33 +22,56 @@
 
 package eu.over9000.skadi.service;
 
+import eu.over9000.skadi.io.ViewerHistoryStore;
 import eu.over9000.skadi.model.Channel;
 import eu.over9000.skadi.remote.EmoteDataRetriever;
 import eu.over9000.skadi.remote.PanelDataRetriever;
 import eu.over9000.skadi.ui.ChannelDetailPaneContent;
 import eu.over9000.skadi.util.DesktopUtil;
-import eu.over9000.skadi.util.ExecutorUtil;
 import eu.over9000.skadi.util.ImageUtil;
 import eu.over9000.skadi.util.StringUtil;
+import eu.over9000.skadi.util.TimeUtil;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.concurrent.Task;
-import javafx.scene.chart.LineChart;
+import javafx.scene.Node;
 import javafx.scene.control.Tooltip;
-import javafx.scene.layout.HBox;
-import javafx.scene.layout.VBox;
+import javafx.scene.layout.Pane;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.text.NumberFormat;
-import java.util.List;
-import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DetailPaneUpdateService extends AbstractSkadiService<Void> {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(DetailPaneUpdateService.class);
+
+	private static final AtomicLong GENERATION = new AtomicLong();
+
 	private final Channel channel;
 	private final ChannelDetailPaneContent content;
+	private final ViewerHistoryStore viewerHistoryStore;
+	private final long generation;
 
-	public DetailPaneUpdateService(final Channel channel, final ChannelDetailPaneContent content) {
+	public DetailPaneUpdateService(final Channel channel, final ChannelDetailPaneContent content, final ViewerHistoryStore viewerHistoryStore) {
 		this.channel = channel;
 		this.content = content;
+		this.viewerHistoryStore = viewerHistoryStore;
+		generation = GENERATION.incrementAndGet();
+	}
+
+	/**
+	 * Panels and emotes arrive one by one after the service finished, they are dropped if another channel has been
+	 * selected in the meantime.
+	 */
+	private void addIfCurrent(final Pane pane, final Node node) {
+		Platform.runLater(() -> {
+			if (generation == GENERATION.get()) {
+				pane.getChildren().add(node);
+			}
+		});
 	}
 
 	@Override
@@ -64,7 +87,8 @@ public class DetailPaneUpdateService extends AbstractSkadiService<Void> {
 				content.getLbName().textProperty().bind(Bindings.createStringBinding(channel::getName, channel.nameProperty()));
 				content.getLbStatus().textProperty().bind(Bindings.createStringBinding(channel::getTitle, channel.titleProperty()));
 				content.getLbCurr().textProperty().bind(Bindings.createStringBinding(() -> "current viewers: " + formatter.format(channel.getViewer()), channel.viewerProperty()));
-				content.getLbAvg().textProperty().bind(Bindings.createStringBinding(() -> "average viewers: " + formatter.format(channel.getViewerHistoryAverage()), channel.viewerHistoryAverageProperty()));
+				content.getLbAvg().textProperty().bind(Bindings.createStringBinding(() -> "average viewers: " + formatter.format(channel.getViewerHistoryAverage()) + " (last " + TimeUnit.MILLISECONDS.toMinutes(channel.getViewerHistory().getMovingWindow()) + "min: " + formatter.format(channel.getViewerHistoryMovingAverage()) + ")", channel.viewerHistoryAverageProperty(), channel.viewerHistoryMovingAverageProperty()));
+				content.getLbPeak().textProperty().bind(Bindings.createStringBinding(() -> channel.getViewerHistory().isEmpty() ? "peak viewers: -" : "peak viewers: " + formatter.format(channel.getViewerHistoryMax()) + " at " + TimeUtil.getStringFromMillis(channel.getViewerHistoryPeakTime()) + ", lowest: " + formatter.format(channel.getViewerHistoryMin()), channel.viewerHistoryMaxProperty(), channel.viewerHistoryPeakTimeProperty(), channel.viewerHistoryMinProperty()));
 
 				content.getLbGame().graphicProperty().bind(Bindings.createObjectBinding(() -> ImageUtil.getGameBoxFromTwitch(channel.getGame()), channel.gameProperty()));
 				content.getLbGame().tooltipProperty().bind(Bindings.createObjectBinding(() -> new Tooltip(channel.getGame()), channel.gameProperty()));
@@ -79,22 +103,26 @@ public class DetailPaneUpdateService extends AbstractSkadiService<Void> {
 
 				content.getBtOpenInBrowser().setOnAction(event -> DesktopUtil.openWebpage(StringUtil.toStreamURL(channel)));
 
-				content.getViewerChart().getData().clear();
-				content.getViewerChart().getData().add(new LineChart.Series<>("viewers", channel.getViewerHistory()));
+				// the history is appended to on the FX thread, so the chart points are created there as well
+				viewerHistoryStore.loadHistory(channel).thenAccept(stored -> Platform.runLater(() -> {
+					if (generation == GENERATION.get()) {
+						content.showViewerHistory(stored, channel.getViewerHistory());
+					}
+				}));
 
 				content.getLbLogo().graphicProperty().bind(Bindings.createObjectBinding(() -> ImageUtil.getChannelLogo(channel.getLogoURL()), channel.logoURLProperty()));
 
 				content.getPanelPane().getChildren().clear();
 				content.getEmotePane().getChildren().clear();
 
-				final Future<List<VBox>> panelsFuture = ExecutorUtil.getExecutorService().submit(() -> PanelDataRetriever.buildPanels(channel.getName()));
-				final Future<List<HBox>> emotesFuture = ExecutorUtil.getExecutorService().submit(() -> EmoteDataRetriever.buildEmotePanel(channel.getName()));
-
-				final List<VBox> panels = panelsFuture.get();
-				final List<HBox> emotes = emotesFuture.get();
-
-				panels.forEach(panel -> content.getPanelPane().getChildren().add(panel));
-				emotes.forEach(box -> content.getEmotePane().getChildren().add(box));
+				PanelDataRetriever.buildPanels(channel.getName(), panel -> addIfCurrent(content.getPanelPane(), panel)).exceptionally(throwable -> {
+					LOGGER.error("error retrieving panels for " + channel, throwable);
+					return null;
+				});
+				EmoteDataRetriever.buildEmotePanel(channel.getName(), box -> addIfCurrent(content.getEmotePane(), box)).exceptionally(throwable -> {
+					LOGGER.error("error retrieving emotes for " + channel, throwable);
+					return null;
+				});
 
 				return null;
 			}
@@ -24,32 +24,43 @@ package eu.over9000.skadi.service;
 
 import eu.over9000.skadi.model.Channel;
 import eu.over9000.skadi.model.ChannelStore;
-import eu.over9000.skadi.remote.ChannelDataRetriever;
-import eu.over9000.skadi.remote.data.ChannelMetadata;
+import eu.over9000.skadi.remote.StreamBatchClient;
 import eu.over9000.skadi.ui.StatusBarWrapper;
-import eu.over9000.skadi.util.ExecutorUtil;
 import eu.over9000.skadi.util.TimeUtil;
-import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.scene.control.Button;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
+/**
+ * Refreshes all channels through the batch polling of the {@link eu.over9000.skadi.poll.ChannelPollScheduler}, so
+ * channels it is polling at the same time are not requested twice.
+ */
 public class ForcedChannelUpdateService extends AbstractSkadiService<Void> {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(ForcedChannelUpdateService.class);
 
+	private static final int REFRESH_PARALLELISM = 4;
+
 	private final ChannelStore channelStore;
+	private final Predicate<Channel> priority;
 
-	public ForcedChannelUpdateService(final ChannelStore channelStore, final StatusBarWrapper statusBar, final Button refresh) {
+	/**
+	 * @param priority
+	 * 		channels matching it are refreshed first
+	 */
+	public ForcedChannelUpdateService(final ChannelStore channelStore, final StatusBarWrapper statusBar, final Button refresh, final Predicate<Channel> priority) {
 		this.channelStore = channelStore;
+		this.priority = priority;
 
 		statusBar.progressProperty().bind(progressProperty());
 		statusBar.textProperty().bind(messageProperty());
@@ -67,39 +78,30 @@ public class ForcedChannelUpdateService extends AbstractSkadiService<Void> {
 	protected Task<Void> createTask() {
 		return new Task<Void>() {
 
-			private final AtomicInteger counter = new AtomicInteger();
-
 			@Override
 			protected Void call() throws Exception {
 				updateMessage("preparing channel refresh..");
 
 				final long start = System.currentTimeMillis();
 				final List<Channel> channels = new ArrayList<>(channelStore.getChannels());
-
-				final Set<Callable<Void>> tasks = new HashSet<>();
-				for (int i = 0; i < channels.size(); i++) {
-
-					final Channel toUpdate = channels.get(i);
-					tasks.add(() -> {
-						final ChannelMetadata updated = ChannelDataRetriever.getChannelMetadata(toUpdate);
-						if (updated != null) {
-
-							Platform.runLater(() -> {
-								synchronized (toUpdate) {
-
-									toUpdate.updateFrom(updated);
-								}
-							});
-						}
-						final int finished = counter.incrementAndGet();
-						updateMessage("Refreshed channel " + (finished + 1) + " of " + channels.size());
-						updateProgress(finished, channels.size());
-						return null;
-					});
-
+				channels.sort(Comparator.comparing(channel -> !priority.test(channel)));
+
+				// the chunks are polled in list order, at most REFRESH_PARALLELISM at a time
+				final AtomicInteger finished = new AtomicInteger();
+				final Deque<CompletableFuture<Void>> running = new ArrayDeque<>();
+				for (int from = 0; from < channels.size(); from += StreamBatchClient.PAGE_SIZE) {
+					if (running.size() == REFRESH_PARALLELISM) {
+						running.poll().join();
+					}
+
+					final List<Channel> chunk = channels.subList(from, Math.min(from + StreamBatchClient.PAGE_SIZE, channels.size()));
+					running.add(channelStore.getPollScheduler().refresh(chunk).thenRun(() -> {
+						final int count = finished.addAndGet(chunk.size());
+						updateMessage("Refreshed channel " + count + " of " + channels.size());
+						updateProgress(count, channels.size());
+					}));
 				}
-
-				ExecutorUtil.getExecutorService().invokeAll(tasks);
+				running.forEach(CompletableFuture::join);
 
 				final long duration = System.currentTimeMillis() - start;
 				updateMessage("Refreshed " + channels.size() + " channels in " + TimeUtil.getDurationBreakdown(duration, true));
@@ -23,6 +23,7 @@
 package eu.over9000.skadi.service;
 
 import eu.over9000.skadi.util.ImageUtil;
+import eu.over9000.skadi.util.Workload;
 import javafx.concurrent.Task;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -35,10 +36,12 @@ public class ImageRetrievalService extends AbstractSkadiService<ImageView> {
 	private boolean resize = false;
 
 	public ImageRetrievalService(final String url) {
+		super(Workload.IMAGES);
 		this.url = url;
 	}
 
 	public ImageRetrievalService(final String url, final int width, final int height) {
+		super(Workload.IMAGES);
 		this.url = url;
 		this.width = width;
 		this.height = height;
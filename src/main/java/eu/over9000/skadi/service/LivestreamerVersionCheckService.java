@@ -24,6 +24,7 @@ package eu.over9000.skadi.service;
 
 import eu.over9000.skadi.model.StateContainer;
 import eu.over9000.skadi.ui.StatusBarWrapper;
+import eu.over9000.skadi.util.Workload;
 import javafx.concurrent.Task;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +46,7 @@ public class LivestreamerVersionCheckService extends AbstractSkadiService<String
 	private final StateContainer state;
 
 	public LivestreamerVersionCheckService(final StatusBarWrapper sb, final StateContainer state) {
+		super(Workload.PROCESSES);
 		this.state = state;
 		setOnSucceeded(event -> {
 			final String message = (String) event.getSource().getValue();
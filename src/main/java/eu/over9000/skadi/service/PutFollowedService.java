@@ -28,6 +28,7 @@ import eu.over9000.cathode.data.parameters.PutFollowsOptions;
 import eu.over9000.skadi.ui.StatusBarWrapper;
 import eu.over9000.skadi.util.ExecutorUtil;
 import eu.over9000.skadi.util.TwitchUtil;
+import eu.over9000.skadi.util.Workload;
 import javafx.concurrent.Task;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -71,9 +72,9 @@ public class PutFollowedService extends AbstractSkadiService<Void> {
 
 				final List<Callable<Result<Follow>>> tasks = new ArrayList<>(toPut.size());
 
-				toPut.forEach(channel -> tasks.add(() -> TwitchUtil.getTwitch().users.putFollows(user, channel, new PutFollowsOptions(true))));
+				toPut.forEach(channel -> tasks.add(() -> TwitchUtil.request(twitch -> twitch.users.putFollows(user, channel, new PutFollowsOptions(true)))));
 
-				final List<Future<Result<Follow>>> futures = ExecutorUtil.getExecutorService().invokeAll(tasks);
+				final List<Future<Result<Follow>>> futures = ExecutorUtil.getExecutor(Workload.SYNC).invokeAll(tasks);
 
 				for (int i = 0; i < futures.size(); i++) {
 					try {
@@ -26,6 +26,7 @@ import eu.over9000.skadi.model.Channel;
 import eu.over9000.skadi.model.StateContainer;
 import eu.over9000.skadi.model.StreamQuality;
 import eu.over9000.skadi.remote.StreamQualityRetriever;
+import eu.over9000.skadi.util.Workload;
 import javafx.concurrent.Task;
 import javafx.scene.control.MenuItem;
 
@@ -40,6 +41,7 @@ public class QualityRetrievalService extends AbstractSkadiService<List<MenuItem>
 	private final StateContainer state;
 
 	public QualityRetrievalService(final Consumer<StreamQuality> consumer, final Channel channel, final StateContainer state) {
+		super(Workload.PROCESSES);
 		this.consumer = consumer;
 		this.channel = channel;
 		this.state = state;
@@ -28,6 +28,7 @@ import eu.over9000.cathode.data.parameters.Direction;
 import eu.over9000.cathode.data.parameters.GetFollowsSortBy;
 import eu.over9000.cathode.data.parameters.OffsetPagination;
 import eu.over9000.skadi.util.TwitchUtil;
+import eu.over9000.skadi.util.Workload;
 import javafx.concurrent.Task;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +44,7 @@ public class RetrieveFollowedService extends AbstractSkadiService<Set<String>> {
 
 	@SuppressWarnings("unchecked")
 	public RetrieveFollowedService(final String user) {
+		super(Workload.SYNC);
 		this.user = user;
 	}
 
@@ -63,7 +65,7 @@ public class RetrieveFollowedService extends AbstractSkadiService<Set<String>> {
 				Result<FollowList> responseFollows;
 
 				do {
-					responseFollows = TwitchUtil.getTwitch().users.getFollows(user, pagination, new Direction(), new GetFollowsSortBy());
+					responseFollows = TwitchUtil.request(twitch -> twitch.users.getFollows(user, pagination, new Direction(), new GetFollowsSortBy()));
 
 					if (!responseFollows.isOk()) {
 						final String error = responseFollows.getErrorRaw().getMessage();
@@ -56,7 +56,7 @@ public class ChannelDetailPane extends BorderPane {
 
 				setCenter(pi);
 
-				final DetailPaneUpdateService service = new DetailPaneUpdateService(newValue, content);
+				final DetailPaneUpdateService service = new DetailPaneUpdateService(newValue, content, main.getChannelStore().getViewerHistoryStore());
 				service.setOnSucceeded(event -> setCenter(content));
 				service.setOnFailed(event -> LOGGER.error("Error building Detail pane", event.getSource().getException()));
 				service.start();
@@ -24,8 +24,10 @@ package eu.over9000.skadi.ui;
 
 import de.jensd.fx.glyphs.GlyphsDude;
 import de.jensd.fx.glyphs.fontawesome.FontAwesomeIcon;
+import eu.over9000.skadi.model.ViewerHistory;
 import eu.over9000.skadi.ui.label.CopyableLabel;
 import eu.over9000.skadi.util.TimeUtil;
+import javafx.beans.InvalidationListener;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.geometry.Insets;
@@ -44,6 +46,9 @@ import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
 import javafx.util.StringConverter;
 
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
 public class ChannelDetailPaneContent extends ScrollPane {
 
 	private final DoubleBinding widthBinding;
@@ -53,7 +58,11 @@ public class ChannelDetailPaneContent extends ScrollPane {
 	private final CopyableLabel lbStatus;
 	private final ImageView ivPreview;
 	private final LineChart<Number, Number> viewerChart;
+	private ViewerHistoryChartData viewerChartData;
+	private ViewerHistory liveHistory;
+	private InvalidationListener liveHistoryListener;
 	private final CopyableLabel lbAvg;
+	private final CopyableLabel lbPeak;
 	private final CopyableLabel lbCurr;
 	private final Label lbGame;
 	private final CopyableLabel lbFollowers;
@@ -97,6 +106,10 @@ public class ChannelDetailPaneContent extends ScrollPane {
 
 			@Override
 			public String toString(final Number object) {
+				// a week of stored history needs the day
+				if (xAxis.getUpperBound() - xAxis.getLowerBound() > TimeUnit.DAYS.toMillis(1)) {
+					return TimeUtil.getDayStringFromMillis(object);
+				}
 				return TimeUtil.getStringFromMillis(object);
 			}
 
@@ -110,9 +123,17 @@ public class ChannelDetailPaneContent extends ScrollPane {
 		viewerChart = new LineChart<>(xAxis, yAxis);
 		viewerChart.setPrefHeight(180);
 		viewerChart.setCreateSymbols(false);
+		viewerChart.setAnimated(false);
+		// about one point per pixel
+		viewerChart.widthProperty().addListener((observable, oldValue, newValue) -> {
+			if (viewerChartData != null) {
+				viewerChartData.setMaxPoints(getViewerChartPoints());
+			}
+		});
 
 
 		lbAvg = new CopyableLabel();
+		lbPeak = new CopyableLabel();
 		lbCurr = new CopyableLabel();
 
 		lbFollowers = new CopyableLabel();
@@ -124,7 +145,7 @@ public class ChannelDetailPaneContent extends ScrollPane {
 
 		emotePane = new FlowPane(5, 5);
 
-		final HBox boxInfo1 = new HBox(10, new VBox(10, lbCurr, lbAvg, lbFollowers, lbViews, lbPartner, btOpenInBrowser), new Separator(Orientation.VERTICAL));
+		final HBox boxInfo1 = new HBox(10, new VBox(10, lbCurr, lbAvg, lbPeak, lbFollowers, lbViews, lbPartner, btOpenInBrowser), new Separator(Orientation.VERTICAL));
 		final VBox boxInfo2 = new VBox(10, new Label("Subscriber Emotes:"), emotePane);
 
 		bp_info.setLeft(boxInfo1);
@@ -195,10 +216,42 @@ public class ChannelDetailPaneContent extends ScrollPane {
 		return viewerChart;
 	}
 
+	/**
+	 * Shows the stored history in the viewer chart, followed by the samples of the live history that are newer and the
+	 * ones added to it later on. Must be called on the FX thread.
+	 */
+	public void showViewerHistory(final ViewerHistory stored, final ViewerHistory live) {
+		if (liveHistory != null) {
+			liveHistory.removeListener(liveHistoryListener);
+		}
+
+		final long lastStored = stored.isEmpty() ? Long.MIN_VALUE : stored.getTime(stored.size() - 1);
+		for (int i = 0; i < live.size(); i++) {
+			if (live.getTime(i) > lastStored) {
+				stored.add(live.getTime(i), live.getViewer(i));
+			}
+		}
+		liveHistory = live;
+		liveHistoryListener = observable -> stored.add(live.getTime(live.size() - 1), live.getViewer(live.size() - 1));
+		live.addListener(liveHistoryListener);
+
+		viewerChartData = new ViewerHistoryChartData(stored, getViewerChartPoints());
+		viewerChart.getData().setAll(Collections.singletonList(new LineChart.Series<>("viewers", viewerChartData)));
+	}
+
+	private int getViewerChartPoints() {
+		final double width = viewerChart.getWidth();
+		return width > 0 ? (int) width : ViewerHistoryChartData.DEFAULT_MAX_POINTS;
+	}
+
 	public CopyableLabel getLbAvg() {
 		return lbAvg;
 	}
 
+	public CopyableLabel getLbPeak() {
+		return lbPeak;
+	}
+
 	public CopyableLabel getLbCurr() {
 		return lbCurr;
 	}
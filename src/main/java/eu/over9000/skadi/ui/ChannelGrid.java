@@ -24,20 +24,90 @@ package eu.over9000.skadi.ui;
 
 import eu.over9000.skadi.model.Channel;
 import impl.org.controlsfx.skin.GridViewSkin;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import org.controlsfx.control.GridView;
 
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
+/**
+ * Grid of channels with a multi selection. The selection only ever contains channels the grid currently shows, channels
+ * that are removed or filtered out are dropped from it.
+ */
 public class ChannelGrid extends GridView<Channel> {
 
+	private final Set<Channel> selection = new LinkedHashSet<>();
 	private Channel selected;
 
+	private final ListChangeListener<Channel> itemsListener = change -> {
+		while (change.next()) {
+			if (change.wasRemoved()) {
+				pruneSelection();
+				return;
+			}
+		}
+	};
+
+	public ChannelGrid() {
+		if (getItems() != null) {
+			getItems().addListener(itemsListener);
+		}
+		itemsProperty().addListener((observable, oldItems, newItems) -> {
+			if (oldItems != null) {
+				oldItems.removeListener(itemsListener);
+			}
+			if (newItems != null) {
+				newItems.addListener(itemsListener);
+			}
+			pruneSelection();
+		});
+	}
+
 	public void select(final Channel channel) {
+		selection.clear();
+		selection.add(channel);
 		selected = channel;
 	}
 
+	/**
+	 * Adds the channel to the selection or removes it if it was selected.
+	 */
+	public void toggle(final Channel channel) {
+		if (selection.remove(channel)) {
+			selected = selection.isEmpty() ? null : selection.iterator().next();
+		} else {
+			selection.add(channel);
+			selected = channel;
+		}
+	}
+
 	public boolean isSelected(final Channel channel) {
-		return Objects.equals(channel, selected);
+		return selection.contains(channel);
+	}
+
+	public List<Channel> getSelection() {
+		pruneSelection();
+		return new ArrayList<>(selection);
+	}
+
+	public void clearSelection() {
+		selection.clear();
+		selected = null;
+	}
+
+	private void pruneSelection() {
+		if (selection.isEmpty()) {
+			return;
+		}
+		final ObservableList<Channel> items = getItems();
+		if (selection.retainAll(items == null ? Collections.emptySet() : new HashSet<>(items)) && !selection.contains(selected)) {
+			selected = selection.isEmpty() ? null : selection.iterator().next();
+		}
 	}
 
 	public void updateItems() {
@@ -45,6 +115,7 @@ public class ChannelGrid extends GridView<Channel> {
 	}
 
 	public Channel getSelected() {
+		pruneSelection();
 		return selected;
 	}
 }
@@ -33,16 +33,20 @@ import eu.over9000.skadi.model.Channel;
 import eu.over9000.skadi.model.ChannelStore;
 import eu.over9000.skadi.model.StateContainer;
 import eu.over9000.skadi.model.StreamQuality;
+import eu.over9000.skadi.model.ViewerHistory;
+import eu.over9000.skadi.poll.PollIntervalPolicy;
 import eu.over9000.skadi.service.ForcedChannelUpdateService;
 import eu.over9000.skadi.service.ImportFollowedService;
 import eu.over9000.skadi.service.LivestreamerVersionCheckService;
 import eu.over9000.skadi.service.VersionCheckerService;
 import eu.over9000.skadi.ui.cells.ChannelGridCell;
+import eu.over9000.skadi.ui.cells.ChannelTableRow;
 import eu.over9000.skadi.ui.cells.LiveCell;
 import eu.over9000.skadi.ui.cells.RightAlignedCell;
 import eu.over9000.skadi.ui.cells.UptimeCell;
 import eu.over9000.skadi.ui.dialogs.SettingsDialog;
 import eu.over9000.skadi.ui.dialogs.SyncDialog;
+import eu.over9000.skadi.ui.label.ApiStatusLabel;
 import eu.over9000.skadi.ui.tray.Tray;
 import eu.over9000.skadi.util.*;
 import javafx.animation.KeyFrame;
@@ -77,7 +81,11 @@ import org.controlsfx.control.SegmentedButton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
 public class MainWindow extends Application implements LockWakeupReceiver {
@@ -86,6 +94,7 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 	private static final Logger LOGGER = LoggerFactory.getLogger(MainWindow.class);
 	private final String darkCSS = getClass().getResource("/styles/dark.css").toExternalForm();
 	private final StatusBarWrapper statusBarWrapper = new StatusBarWrapper();
+	private final VisibleChannelTracker visibleChannelTracker = new VisibleChannelTracker();
 	private ChannelStore channelStore;
 	private ChatHandler chatHandler;
 	private StreamHandler streamHandler;
@@ -131,6 +140,8 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		persistenceHandler = new PersistenceHandler();
 		applicationState = persistenceHandler.loadState();
 
+		TwitchUtil.configureRateLimit(applicationState.getApiRequestsPerSecond(), applicationState.getApiBurst());
+		ViewerHistory.setDefaultRetention(TimeUnit.HOURS.toMillis(applicationState.getViewerHistoryHours()));
 		TwitchUtil.init(applicationState.getAuthToken());
 
 		channelStore = new ChannelStore(persistenceHandler, applicationState);
@@ -138,6 +149,8 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		streamHandler = new StreamHandler(statusBarWrapper, channelStore, applicationState);
 
 		detailChannel = new SimpleObjectProperty<>();
+		channelStore.getPollScheduler().setPriority(visibleChannelTracker);
+		visibleChannelTracker.addListener(channelStore.getPollScheduler()::pollVisible);
 	}
 
 	@Override
@@ -203,6 +216,7 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		borderPane.setCenter(splitPane);
 
 		borderPane.setBottom(statusBarWrapper.getStatusBar());
+		statusBarWrapper.getStatusBar().getRightItems().add(new ApiStatusLabel(TwitchUtil.getRateLimiter(), channelStore.getPollScheduler().getCircuitBreaker()));
 
 		scene = new Scene(borderPane);
 		scene.getStylesheets().add(getClass().getResource("/styles/copyable-label.css").toExternalForm());
@@ -321,6 +335,7 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 
 		tbTable.setOnAction(event -> {
 			table.toFront();
+			visibleChannelTracker.setActiveView(VisibleChannelTracker.View.TABLE);
 			applicationState.setShowGrid(false);
 			persistenceHandler.saveState(applicationState);
 			toggleScaleSlider(false);
@@ -328,6 +343,7 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 
 		tbGrid.setOnAction(event -> {
 			grid.toFront();
+			visibleChannelTracker.setActiveView(VisibleChannelTracker.View.GRID);
 			applicationState.setShowGrid(true);
 			persistenceHandler.saveState(applicationState);
 			toggleScaleSlider(true);
@@ -343,10 +359,12 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		if (applicationState.isShowGrid()) {
 			tbGrid.setSelected(true);
 			grid.toFront();
+			visibleChannelTracker.setActiveView(VisibleChannelTracker.View.GRID);
 			toggleScaleSlider(true);
 		} else {
 			tbTable.setSelected(true);
 			table.toFront();
+			visibleChannelTracker.setActiveView(VisibleChannelTracker.View.TABLE);
 			toggleScaleSlider(false);
 		}
 	}
@@ -363,6 +381,8 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 	public void stop() throws Exception {
 		super.stop();
 		tray.onShutdown();
+		channelStore.onShutdown();
+		persistenceHandler.flush();
 		ExecutorUtil.performShutdown();
 		NotificationUtil.onShutdown();
 	}
@@ -433,19 +453,26 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		remove = GlyphsDude.createIconButton(FontAwesomeIcon.TRASH);
 		remove.setDisable(true);
 		remove.setOnAction(event -> {
-			final Channel candidate = lastSelected;
+			final List<Channel> candidates = getSelectedChannels();
+			if (candidates.isEmpty()) {
+				return;
+			}
+			final String description = candidates.size() == 1 ? candidates.get(0).getName() : candidates.size() + " channels";
 
 			final Alert alert = new Alert(AlertType.CONFIRMATION);
 			alert.initModality(Modality.APPLICATION_MODAL);
 			alert.initOwner(stage);
 			alert.setTitle("Delete channel");
-			alert.setHeaderText("Delete " + candidate.getName());
-			alert.setContentText("Do you really want to delete " + candidate.getName() + "?");
+			alert.setHeaderText("Delete " + description);
+			alert.setContentText("Do you really want to delete " + description + "?");
 
 			final Optional<ButtonType> result = alert.showAndWait();
 			if (result.isPresent() && result.get() == ButtonType.OK) {
-				channelStore.getChannels().remove(candidate);
-				statusBarWrapper.updateStatusText("Removed channel " + candidate.getName());
+				channelStore.removeChannels(candidates, statusBarWrapper);
+				if (applicationState.isShowGrid()) {
+					grid.clearSelection();
+					onSelection(null);
+				}
 			}
 		});
 
@@ -453,7 +480,7 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		refresh.setTooltip(new Tooltip("Refresh all channels"));
 		refresh.setOnAction(event -> {
 			refresh.setDisable(true);
-			final ForcedChannelUpdateService service = new ForcedChannelUpdateService(channelStore, statusBarWrapper, refresh);
+			final ForcedChannelUpdateService service = new ForcedChannelUpdateService(channelStore, statusBarWrapper, refresh, visibleChannelTracker);
 			service.start();
 		});
 
@@ -468,6 +495,7 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 				persistenceHandler.saveState(result.get());
 				checkThemeChange();
 				checkAuthChange();
+				checkPollingChange();
 			}
 		});
 
@@ -510,6 +538,11 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		sync.setDisable(!hasAuth);
 	}
 
+	private void checkPollingChange() {
+		channelStore.getPollScheduler().setPolicy(PollIntervalPolicy.fromState(applicationState, channelStore.getGoLiveHistogramStore()));
+		channelStore.getLiveStatusSubscription().setEnabled(applicationState.isPushUpdates());
+	}
+
 	private void checkThemeChange() {
 		final boolean useDark = applicationState.isUseDarkTheme();
 		final boolean isPresent = scene.getStylesheets().contains(darkCSS);
@@ -582,6 +615,11 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		uptimeCol.setCellFactory(p -> new UptimeCell());
 
 		table.setPlaceholder(new Label("no channels added/matching the filters"));
+		table.setRowFactory(tableView -> {
+			final TableRow<Channel> row = new ChannelTableRow();
+			visibleChannelTracker.track(row, VisibleChannelTracker.View.TABLE);
+			return row;
+		});
 
 		//table.getColumns().add(liveCol);
 		table.getColumns().add(nameCol);
@@ -600,6 +638,7 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		sortedChannelListTable.comparatorProperty().bind(table.comparatorProperty());
 
 		table.setItems(sortedChannelListTable);
+		table.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
 
 		table.getSelectionModel().selectedItemProperty().addListener((obs, oldV, newV) -> {
 			onSelection(newV);
@@ -614,7 +653,7 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 			}
 
 			if (event.getButton() == MouseButton.MIDDLE) {
-				openStream(table.getSelectionModel().getSelectedItem());
+				openStreams(table.getSelectionModel().getSelectedItems());
 
 			} else if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2) {
 				openDetailPage(table.getSelectionModel().getSelectedItem());
@@ -636,6 +675,7 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		}
 
 		detailChannel.set(channel);
+		visibleChannelTracker.setDetailChannel(channel);
 		if (!splitPane.getItems().contains(detailPane)) {
 			splitPane.getItems().add(detailPane);
 			doDetailSlide(true);
@@ -663,6 +703,7 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		final Timeline timeline = new Timeline(keyFrame);
 		timeline.setOnFinished(evt -> {
 			if (!doOpen) {
+				visibleChannelTracker.setDetailChannel(null);
 				splitPane.getItems().remove(detailPane);
 				detailPane.setOpacity(1);
 			}
@@ -670,6 +711,14 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		timeline.play();
 	}
 
+	public ChannelStore getChannelStore() {
+		return channelStore;
+	}
+
+	public VisibleChannelTracker getVisibleChannelTracker() {
+		return visibleChannelTracker;
+	}
+
 	public ObjectProperty<Channel> getDetailChannel() {
 		return detailChannel;
 	}
@@ -689,6 +738,20 @@ public class MainWindow extends Application implements LockWakeupReceiver {
 		streamHandler.openStream(item, StreamQuality.getBestQuality());
 	}
 
+	public void openStreams(final Collection<Channel> items) {
+		new ArrayList<>(items).forEach(this::openStream);
+	}
+
+	/**
+	 * @return the channels selected in the active view
+	 */
+	private List<Channel> getSelectedChannels() {
+		if (applicationState.isShowGrid()) {
+			return grid.getSelection();
+		}
+		return new ArrayList<>(table.getSelectionModel().getSelectedItems());
+	}
+
 
 	public DoubleProperty scalingGridCellWidthProperty() {
 		return scalingGridCellWidth;
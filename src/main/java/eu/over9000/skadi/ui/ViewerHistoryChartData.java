@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.ui;
+
+import eu.over9000.skadi.model.ViewerHistory;
+import javafx.beans.InvalidationListener;
+import javafx.beans.WeakInvalidationListener;
+import javafx.collections.ModifiableObservableListBase;
+import javafx.scene.chart.XYChart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The chart points of a {@link ViewerHistory}, downsampled with largest-triangle-three-buckets to at most about {@link
+ * #setMaxPoints(int) maxPoints} points. The points are created right away and kept in sync with the history, which
+ * only holds a weak reference to the list, so the list can be collected once the chart is gone.
+ * <p>
+ * Buckets are aligned to the sequence numbers of the samples, so a new sample only changes the last two points and an
+ * expired one only the first. The whole list is rebuilt when the bucket size changes, which happens a few times while
+ * the history fills up or when the chart is resized.
+ */
+public class ViewerHistoryChartData extends ModifiableObservableListBase<XYChart.Data<Number, Number>> {
+
+	public static final int DEFAULT_MAX_POINTS = 500;
+	private static final int MIN_POINTS = 3;
+
+	private final ViewerHistory history;
+	private final List<XYChart.Data<Number, Number>> points = new ArrayList<>();
+	private final InvalidationListener listener = observable -> sync();
+
+	private int maxPoints;
+	private long bucketSize;
+	private long firstBucket;
+	private long lastBucket;
+
+	public ViewerHistoryChartData(final ViewerHistory history) {
+		this(history, DEFAULT_MAX_POINTS);
+	}
+
+	public ViewerHistoryChartData(final ViewerHistory history, final int maxPoints) {
+		this.history = history;
+		this.maxPoints = Math.max(MIN_POINTS, maxPoints);
+		history.addListener(new WeakInvalidationListener(listener));
+		sync();
+	}
+
+	public void setMaxPoints(final int maxPoints) {
+		final int newMaxPoints = Math.max(MIN_POINTS, maxPoints);
+		if (newMaxPoints != this.maxPoints) {
+			this.maxPoints = newMaxPoints;
+			sync();
+		}
+	}
+
+	public int getMaxPoints() {
+		return maxPoints;
+	}
+
+	private void sync() {
+		final int size = history.size();
+		if (size == 0) {
+			if (!isEmpty()) {
+				clear();
+			}
+			bucketSize = 0;
+			return;
+		}
+
+		final long start = history.getAddedCount() - size;
+		final long end = history.getAddedCount();
+		final long newBucketSize = computeBucketSize(size);
+		final long newFirstBucket = start / newBucketSize;
+		final long newLastBucket = (end - 1) / newBucketSize;
+
+		// expired and new points are reported to the chart as a single change
+		beginChange();
+		try {
+			if (newBucketSize != bucketSize || newFirstBucket > lastBucket) {
+				final List<XYChart.Data<Number, Number>> rebuilt = new ArrayList<>((int) (newLastBucket - newFirstBucket + 1));
+				XYChart.Data<Number, Number> previous = null;
+				for (long bucket = newFirstBucket; bucket <= newLastBucket; bucket++) {
+					previous = select(bucket, newBucketSize, newFirstBucket, newLastBucket, previous);
+					rebuilt.add(previous);
+				}
+				setAll(rebuilt);
+			} else {
+				if (newFirstBucket > firstBucket) {
+					remove(0, (int) (newFirstBucket - firstBucket));
+				}
+				// the oldest sample is always shown, the following points are kept even if their triangles changed
+				if (get(0).getXValue().longValue() != history.getTime(0)) {
+					set(0, select(newFirstBucket, newBucketSize, newFirstBucket, newLastBucket, null));
+				}
+
+				final long from = Math.max(newFirstBucket + 1, lastBucket - 1);
+				if (from <= newLastBucket) {
+					final int fromIndex = (int) (from - newFirstBucket);
+					remove(fromIndex, size());
+					XYChart.Data<Number, Number> previous = get(fromIndex - 1);
+					final List<XYChart.Data<Number, Number>> added = new ArrayList<>((int) (newLastBucket - from + 1));
+					for (long bucket = from; bucket <= newLastBucket; bucket++) {
+						previous = select(bucket, newBucketSize, newFirstBucket, newLastBucket, previous);
+						added.add(previous);
+					}
+					addAll(added);
+				}
+			}
+		} finally {
+			endChange();
+		}
+
+		bucketSize = newBucketSize;
+		firstBucket = newFirstBucket;
+		lastBucket = newLastBucket;
+	}
+
+	/**
+	 * The smallest power of two that gives at most maxPoints buckets, powers of two keep the number of rebuilds low.
+	 */
+	private long computeBucketSize(final int size) {
+		long candidate = 1;
+		while ((size + candidate - 1) / candidate + 1 > maxPoints) {
+			candidate <<= 1;
+		}
+		return candidate;
+	}
+
+	/**
+	 * Picks the sample of the bucket that forms the largest triangle with the previously picked point and the average
+	 * of the next bucket. The first and the last bucket show the oldest and the newest sample.
+	 */
+	private XYChart.Data<Number, Number> select(final long bucket, final long bucketSize, final long first, final long last, final XYChart.Data<Number, Number> previous) {
+		final long start = history.getAddedCount() - history.size();
+		final long end = history.getAddedCount();
+
+		if (bucket == first) {
+			return point(0);
+		}
+		if (bucket == last) {
+			return point(history.size() - 1);
+		}
+
+		final int nextFrom = (int) (Math.max((bucket + 1) * bucketSize, start) - start);
+		final int nextTo = (int) (Math.min((bucket + 2) * bucketSize, end) - start);
+		double nextTime = 0;
+		double nextViewer = 0;
+		for (int i = nextFrom; i < nextTo; i++) {
+			nextTime += history.getTime(i);
+			nextViewer += history.getViewer(i);
+		}
+		nextTime /= nextTo - nextFrom;
+		nextViewer /= nextTo - nextFrom;
+
+		final double previousTime = previous.getXValue().doubleValue();
+		final double previousViewer = previous.getYValue().doubleValue();
+
+		final int from = (int) (bucket * bucketSize - start);
+		final int to = (int) Math.min((bucket + 1) * bucketSize - start, history.size());
+		int selected = from;
+		double maxArea = -1;
+		for (int i = from; i < to; i++) {
+			final double area = Math.abs((previousTime - nextTime) * (history.getViewer(i) - previousViewer) - (previousTime - history.getTime(i)) * (nextViewer - previousViewer));
+			if (area > maxArea) {
+				maxArea = area;
+				selected = i;
+			}
+		}
+		return point(selected);
+	}
+
+	private XYChart.Data<Number, Number> point(final int index) {
+		return new XYChart.Data<>(history.getTime(index), history.getViewer(index));
+	}
+
+	@Override
+	public XYChart.Data<Number, Number> get(final int index) {
+		return points.get(index);
+	}
+
+	@Override
+	public int size() {
+		return points.size();
+	}
+
+	@Override
+	protected void doAdd(final int index, final XYChart.Data<Number, Number> element) {
+		points.add(index, element);
+	}
+
+	@Override
+	protected XYChart.Data<Number, Number> doSet(final int index, final XYChart.Data<Number, Number> element) {
+		return points.set(index, element);
+	}
+
+	@Override
+	protected XYChart.Data<Number, Number> doRemove(final int index) {
+		return points.remove(index);
+	}
+}
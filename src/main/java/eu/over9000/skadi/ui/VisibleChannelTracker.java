@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.ui;
+
+import eu.over9000.skadi.model.Channel;
+import javafx.beans.InvalidationListener;
+import javafx.scene.control.IndexedCell;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Keeps track of the channels shown by the cells of the table and the grid and of the channel open in the detail
+ * pane, so they can be refreshed before the channels that are off screen. The cells of a virtualized view only exist
+ * for the visible rows and a few around them, so a channel is considered visible while a cell of the active view
+ * shows it. Listeners are told about every channel that becomes visible.
+ */
+public class VisibleChannelTracker implements Predicate<Channel> {
+
+	public enum View {
+		TABLE, GRID
+	}
+
+	private final Map<View, Map<Channel, Integer>> shown = new EnumMap<>(View.class);
+	private final List<Consumer<Channel>> listeners = new CopyOnWriteArrayList<>();
+
+	private volatile View activeView = View.TABLE;
+	private volatile Channel detailChannel;
+
+	public VisibleChannelTracker() {
+		for (final View view : View.values()) {
+			shown.put(view, new ConcurrentHashMap<>());
+		}
+	}
+
+	/**
+	 * Starts tracking the channel shown by the cell, must be called on the FX thread.
+	 */
+	public void track(final IndexedCell<Channel> cell, final View view) {
+		final Map<Channel, Integer> counts = shown.get(view);
+		final Channel[] current = new Channel[1];
+
+		final InvalidationListener listener = observable -> {
+			final Channel now = cell.isVisible() && !cell.isEmpty() ? cell.getItem() : null;
+			if (now != current[0]) {
+				if (current[0] != null) {
+					counts.computeIfPresent(current[0], (channel, count) -> count == 1 ? null : count - 1);
+				}
+				if (now != null && counts.merge(now, 1, Integer::sum) == 1 && view == activeView) {
+					fireVisible(now);
+				}
+				current[0] = now;
+			}
+		};
+		cell.itemProperty().addListener(listener);
+		cell.emptyProperty().addListener(listener);
+		cell.visibleProperty().addListener(listener);
+	}
+
+	/**
+	 * Adds a listener called on the FX thread with each channel that becomes visible.
+	 */
+	public void addListener(final Consumer<Channel> listener) {
+		listeners.add(listener);
+	}
+
+	public void setActiveView(final View activeView) {
+		if (this.activeView != activeView) {
+			this.activeView = activeView;
+			shown.get(activeView).keySet().forEach(this::fireVisible);
+		}
+	}
+
+	public void setDetailChannel(final Channel detailChannel) {
+		if (detailChannel != null && detailChannel != this.detailChannel) {
+			fireVisible(detailChannel);
+		}
+		this.detailChannel = detailChannel;
+	}
+
+	private void fireVisible(final Channel channel) {
+		listeners.forEach(listener -> listener.accept(channel));
+	}
+
+	/**
+	 * @return true if the channel is visible in the active view or open in the detail pane
+	 */
+	@Override
+	public boolean test(final Channel channel) {
+		return channel == detailChannel || shown.get(activeView).containsKey(channel);
+	}
+}
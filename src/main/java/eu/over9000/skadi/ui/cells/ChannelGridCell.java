@@ -27,6 +27,7 @@ import de.jensd.fx.glyphs.fontawesome.FontAwesomeIcon;
 import eu.over9000.skadi.model.Channel;
 import eu.over9000.skadi.ui.ChannelGrid;
 import eu.over9000.skadi.ui.MainWindow;
+import eu.over9000.skadi.ui.VisibleChannelTracker;
 import javafx.beans.binding.Bindings;
 import javafx.beans.value.WeakChangeListener;
 import javafx.geometry.Insets;
@@ -57,6 +58,7 @@ public class ChannelGridCell extends GridCell<Channel> {
 
 	public ChannelGridCell(final ChannelGrid grid, final MainWindow mainWindow) {
 		this.grid = grid;
+		mainWindow.getVisibleChannelTracker().track(this, VisibleChannelTracker.View.GRID);
 
 		getStyleClass().add(GRID_BOX);
 
@@ -85,11 +87,17 @@ public class ChannelGridCell extends GridCell<Channel> {
 			}
 
 			if (event.getButton() == MouseButton.MIDDLE) {
-				doSelectionUpdate(grid, mainWindow);
-				mainWindow.openStream(grid.getSelected());
+				if (!grid.isSelected(getItem())) {
+					doSelectionUpdate(grid, mainWindow);
+				}
+				mainWindow.openStreams(grid.getSelection());
 			}
 			if (event.getButton() == MouseButton.PRIMARY) {
-				if (event.getClickCount() == 1) {
+				if (event.getClickCount() == 1 && event.isShortcutDown()) {
+					grid.toggle(getItem());
+					mainWindow.onSelection(grid.getSelected());
+					grid.updateItems();
+				} else if (event.getClickCount() == 1) {
 					doSelectionUpdate(grid, mainWindow);
 				} else {
 					mainWindow.openDetailPage(getItem());
@@ -116,6 +124,7 @@ public class ChannelGridCell extends GridCell<Channel> {
 
 		if (empty || item == null) {
 			imageView.setImage(null);
+			vBox.opacityProperty().unbind();
 			setGraphic(null);
 			setText(null);
 		} else {
@@ -144,6 +153,8 @@ public class ChannelGridCell extends GridCell<Channel> {
 
 			imageView.setImage(item.getPreview());
 
+			vBox.opacityProperty().bind(Bindings.when(item.staleProperty()).then(ChannelTableRow.STALE_OPACITY).otherwise(1.0));
+
 			setGraphic(vBox);
 
 			setText(null);
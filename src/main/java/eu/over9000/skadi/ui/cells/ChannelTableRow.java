@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.ui.cells;
+
+import eu.over9000.skadi.model.Channel;
+import javafx.beans.binding.Bindings;
+import javafx.scene.control.TableRow;
+
+/**
+ * Table row that fades out channels showing stale metadata.
+ */
+public class ChannelTableRow extends TableRow<Channel> {
+
+	public static final double STALE_OPACITY = 0.5;
+
+	@Override
+	protected void updateItem(final Channel item, final boolean empty) {
+		super.updateItem(item, empty);
+
+		opacityProperty().unbind();
+		if (empty || item == null) {
+			setOpacity(1.0);
+		} else {
+			opacityProperty().bind(Bindings.when(item.staleProperty()).then(STALE_OPACITY).otherwise(1.0));
+		}
+	}
+}
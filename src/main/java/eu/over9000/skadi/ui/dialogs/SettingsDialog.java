@@ -55,6 +55,9 @@ public class SettingsDialog extends Dialog<StateContainer> {
 	private CheckBox cbShowNotifications;
 	private CheckBox cbMinimizeToTray;
 	private CheckBox cbDarkTheme;
+	private CheckBox cbAdaptivePolling;
+	private CheckBox cbPredictivePolling;
+	private CheckBox cbPushUpdates;
 	private Label lbLivestreamer;
 	private Label lbChrome;
 	private Label lbAuthUser;
@@ -89,6 +92,9 @@ public class SettingsDialog extends Dialog<StateContainer> {
 				state.setDisplayNotifications(cbShowNotifications.isSelected());
 				state.setMinimizeToTray(cbMinimizeToTray.isSelected());
 				state.setUseDarkTheme(cbDarkTheme.isSelected());
+				state.setAdaptivePolling(cbAdaptivePolling.isSelected());
+				state.setPredictivePolling(cbPredictivePolling.isSelected());
+				state.setPushUpdates(cbPushUpdates.isSelected());
 				return state;
 			}
 			return null;
@@ -119,6 +125,30 @@ public class SettingsDialog extends Dialog<StateContainer> {
 		return cbDarkTheme;
 	}
 
+	public CheckBox getCbAdaptivePolling() {
+		if (cbAdaptivePolling == null) {
+			cbAdaptivePolling = new CheckBox("Poll offline channels less often");
+			cbAdaptivePolling.setSelected(state.isAdaptivePolling());
+		}
+		return cbAdaptivePolling;
+	}
+
+	public CheckBox getCbPredictivePolling() {
+		if (cbPredictivePolling == null) {
+			cbPredictivePolling = new CheckBox("Poll more often when channels usually go live");
+			cbPredictivePolling.setSelected(state.isPredictivePolling());
+		}
+		return cbPredictivePolling;
+	}
+
+	public CheckBox getCbPushUpdates() {
+		if (cbPushUpdates == null) {
+			cbPushUpdates = new CheckBox("Receive live status changes instantly (experimental)");
+			cbPushUpdates.setSelected(state.isPushUpdates());
+		}
+		return cbPushUpdates;
+	}
+
 	public Label getLbLivestreamer() {
 		if (lbLivestreamer == null) {
 			lbLivestreamer = new Label("Livestreamer executable");
@@ -277,16 +307,19 @@ public class SettingsDialog extends Dialog<StateContainer> {
 			contentPane.add(getCbShowNotifications(), 0, 3);
 			contentPane.add(getCbMinimizeToTray(), 0, 4);
 			contentPane.add(getCbDarkTheme(), 0, 5);
+			contentPane.add(getCbAdaptivePolling(), 0, 6);
+			contentPane.add(getCbPredictivePolling(), 0, 7);
+			contentPane.add(getCbPushUpdates(), 0, 8);
 
-			contentPane.add(new Separator(), 0, 6, 3, 1);
+			contentPane.add(new Separator(), 0, 9, 3, 1);
 
-			contentPane.add(getLbAuthUser(), 0, 7);
-			contentPane.add(getValueAuthUser(), 1, 7);
-			contentPane.add(getBtChangeAuth(), 2, 7);
+			contentPane.add(getLbAuthUser(), 0, 10);
+			contentPane.add(getValueAuthUser(), 1, 10);
+			contentPane.add(getBtChangeAuth(), 2, 10);
 
-			contentPane.add(new Separator(), 0, 8, 3, 1);
+			contentPane.add(new Separator(), 0, 11, 3, 1);
 
-			contentPane.add(getBoxSkadiLog(), 0, 9);
+			contentPane.add(getBoxSkadiLog(), 0, 12);
 
 
 		}
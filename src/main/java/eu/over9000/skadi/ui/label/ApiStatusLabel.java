@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.ui.label;
+
+import de.jensd.fx.glyphs.GlyphsDude;
+import de.jensd.fx.glyphs.fontawesome.FontAwesomeIcon;
+import eu.over9000.skadi.poll.CircuitBreaker;
+import eu.over9000.skadi.remote.CoalescedRequests;
+import eu.over9000.skadi.remote.RequestRateLimiter;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.util.Duration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows the state of the API rate limiter and of the polling circuit breaker in the status bar, refreshed once per
+ * second.
+ */
+public class ApiStatusLabel extends Label {
+
+	private final RequestRateLimiter rateLimiter;
+	private final CircuitBreaker circuitBreaker;
+	private final Tooltip tooltip = new Tooltip();
+
+	public ApiStatusLabel(final RequestRateLimiter rateLimiter, final CircuitBreaker circuitBreaker) {
+		this.rateLimiter = rateLimiter;
+		this.circuitBreaker = circuitBreaker;
+
+		setTooltip(tooltip);
+		update();
+
+		final Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(1), event -> update()));
+		timeline.setCycleCount(Animation.INDEFINITE);
+		timeline.play();
+	}
+
+	private void update() {
+		final int queued = rateLimiter.getQueueLength();
+		switch (circuitBreaker.getState()) {
+			case OPEN:
+				setGraphic(GlyphsDude.createIcon(FontAwesomeIcon.WARNING));
+				setText("API unavailable, retrying in " + TimeUnit.MILLISECONDS.toSeconds(circuitBreaker.getRemainingOpenTime(System.currentTimeMillis())) + "s");
+				break;
+			case HALF_OPEN:
+				setGraphic(GlyphsDude.createIcon(FontAwesomeIcon.WARNING));
+				setText("API unavailable, retrying now");
+				break;
+			default:
+				setGraphic(GlyphsDude.createIcon(FontAwesomeIcon.EXCHANGE));
+				setText(queued == 0 ? "API idle" : queued + " API requests queued");
+				break;
+		}
+		tooltip.setText("API requests: " + rateLimiter.getAcquiredCount() + "\n" +
+				"delayed by rate limit: " + rateLimiter.getDelayedCount() + "\n" +
+				"average delay: " + rateLimiter.getAverageWait() + "ms\n" +
+				"longest delay: " + rateLimiter.getMaxWait() + "ms\n" +
+				"duplicate requests coalesced: " + CoalescedRequests.getCoalescedCount() + " of " + (CoalescedRequests.getExecutedCount() + CoalescedRequests.getCoalescedCount()));
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread pool with a bounded queue for a single {@link Workload}. Tasks submitted while the queue is full are
+ * rejected with a {@link RejectedExecutionException}.
+ */
+public class BulkheadExecutor extends ThreadPoolExecutor {
+
+	private static final long THREAD_TIME_OUT = 2;
+
+	private final String name;
+	private final AtomicLong rejected = new AtomicLong();
+
+	public BulkheadExecutor(final String name, final int threads, final int queueCapacity, final ThreadFactory threadFactory) {
+		super(threads, threads, THREAD_TIME_OUT, TimeUnit.MINUTES, new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+		this.name = name;
+		allowCoreThreadTimeOut(true);
+		setRejectedExecutionHandler((runnable, executor) -> {
+			rejected.incrementAndGet();
+			throw new RejectedExecutionException("queue of executor " + name + " is full");
+		});
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	@Override
+	public String toString() {
+		return name + ": " + getActiveCount() + "/" + getMaximumPoolSize() + " active, " + getQueue().size() + " queued, " + getCompletedTaskCount() + " completed, " + getRejectedCount() + " rejected";
+	}
+}
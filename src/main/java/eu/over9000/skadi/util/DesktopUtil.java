@@ -40,7 +40,7 @@ public class DesktopUtil {
 
 	public static void openWebpage(final URI uri) {
 		final Runnable instance = new DesktopInstance(uri);
-		ExecutorUtil.getExecutorService().submit(instance);
+		ExecutorUtil.getExecutor(Workload.PROCESSES).submit(instance);
 	}
 
 	private static class DesktopInstance implements Runnable {
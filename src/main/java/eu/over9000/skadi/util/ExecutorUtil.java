@@ -25,48 +25,140 @@ package eu.over9000.skadi.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ExecutorUtil {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ExecutorUtil.class);
 
-	private static final long THREAD_TIME_OUT = 2;
-	private static final int THREAD_POOL_SIZE = 64;
+	private static final long STATS_INTERVAL = 1;
+
+	/**
+	 * In virtual thread mode the pools can be much larger, blocked tasks only cost a little memory.
+	 */
+	private static final int VIRTUAL_THREAD_FACTOR = 16;
+
+	/**
+	 * Set to true ({@code -Dskadi.virtualThreads=true}) to run background tasks on virtual threads, if the runtime
+	 * supports them.
+	 */
+	public static final String VIRTUAL_THREADS_PROPERTY = "skadi.virtualThreads";
 
 	private static final ThreadGroup THREAD_GROUP = new ThreadGroup("Skadi-pool");
 
 	private static final Thread.UncaughtExceptionHandler UNCAUGHT_HANDLER = (thread, throwable) -> LOGGER.warn("Uncaught throwable in " + THREAD_GROUP.getName(), throwable);
 
-	private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
-		private final AtomicInteger threadNumber = new AtomicInteger(1);
+	private static final boolean VIRTUAL_THREADS = useVirtualThreads();
+
+	private static final Map<Workload, BulkheadExecutor> EXECUTORS = new EnumMap<>(Workload.class);
+
+	private static final ScheduledThreadPoolExecutor SCHEDULER_SERVICE = new ScheduledThreadPoolExecutor(1, createPlatformThreadFactory("scheduler"));
+
+	static {
+		for (final Workload workload : Workload.values()) {
+			EXECUTORS.put(workload, createExecutor(workload, VIRTUAL_THREADS));
+		}
+		SCHEDULER_SERVICE.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		SCHEDULER_SERVICE.scheduleWithFixedDelay(ExecutorUtil::logStats, STATS_INTERVAL, STATS_INTERVAL, TimeUnit.MINUTES);
+	}
 
-		@Override
-		public Thread newThread(final Runnable runnable) {
-			final Thread thread = new Thread(THREAD_GROUP, runnable, THREAD_GROUP.getName() + "-thread-" + threadNumber.getAndIncrement(), 0);
+	/**
+	 * @return true if virtual threads are requested with {@link #VIRTUAL_THREADS_PROPERTY} and supported by the runtime
+	 */
+	static boolean useVirtualThreads() {
+		return Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY) && checkVirtualThreads();
+	}
+
+	private static boolean checkVirtualThreads() {
+		if (createVirtualThreadFactory("check") != null) {
+			LOGGER.info("using virtual threads for background tasks");
+			return true;
+		}
+		LOGGER.warn("virtual threads are not supported by this java runtime, using platform threads");
+		return false;
+	}
+
+	static BulkheadExecutor createExecutor(final Workload workload, final boolean virtualThreads) {
+		if (virtualThreads) {
+			return new BulkheadExecutor(workload.getThreadName(), workload.getThreads() * VIRTUAL_THREAD_FACTOR, workload.getQueueCapacity(), createVirtualThreadFactory(workload.getThreadName()));
+		}
+		return new BulkheadExecutor(workload.getThreadName(), workload.getThreads(), workload.getQueueCapacity(), createPlatformThreadFactory(workload.getThreadName()));
+	}
+
+	private static ThreadFactory createPlatformThreadFactory(final String name) {
+		final AtomicInteger threadNumber = new AtomicInteger(1);
+		return runnable -> {
+			final Thread thread = new Thread(THREAD_GROUP, runnable, THREAD_GROUP.getName() + "-" + name + "-thread-" + threadNumber.getAndIncrement(), 0);
 			thread.setUncaughtExceptionHandler(UNCAUGHT_HANDLER);
 			thread.setPriority(Thread.MIN_PRIORITY);
 			thread.setDaemon(true);
 			return thread;
-		}
-	};
+		};
+	}
 
-	private static final ThreadPoolExecutor EXECUTOR_SERVICE = new ThreadPoolExecutor(THREAD_POOL_SIZE, THREAD_POOL_SIZE, THREAD_TIME_OUT, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), THREAD_FACTORY);
+	/**
+	 * Creates a factory for virtual threads, the equivalent of
+	 * {@code Thread.ofVirtual().name(..).uncaughtExceptionHandler(..).factory()}. The API is looked up by reflection
+	 * since skadi is built for java 8.
+	 *
+	 * @return the factory or null if the runtime has no (enabled) virtual threads
+	 */
+	static ThreadFactory createVirtualThreadFactory(final String name) {
+		try {
+			final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_GROUP.getName() + "-" + name + "-virtual-", 1L);
+			builder = builderClass.getMethod("uncaughtExceptionHandler", Thread.UncaughtExceptionHandler.class).invoke(builder, UNCAUGHT_HANDLER);
+			final ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
 
-	static {
-		EXECUTOR_SERVICE.allowCoreThreadTimeOut(true);
+			// creating a thread fails if virtual threads are a disabled preview feature
+			factory.newThread(() -> {
+			});
+			return factory;
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			LOGGER.debug("virtual threads unavailable", e);
+			return null;
+		}
+	}
+
+	private static void logStats() {
+		if (LOGGER.isDebugEnabled()) {
+			EXECUTORS.values().forEach(executor -> LOGGER.debug("executor " + executor));
+		}
 	}
 
 	public static void performShutdown() {
 		try {
-			EXECUTOR_SERVICE.shutdown();
-			EXECUTOR_SERVICE.awaitTermination(5, TimeUnit.SECONDS);
+			SCHEDULER_SERVICE.shutdown();
+			EXECUTORS.values().forEach(ThreadPoolExecutor::shutdown);
+
+			final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			for (final BulkheadExecutor executor : EXECUTORS.values()) {
+				executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			}
 		} catch (final InterruptedException e) {
 			LOGGER.error("exception during shutdown", e);
 		}
 	}
 
-	public static ExecutorService getExecutorService() {
-		return EXECUTOR_SERVICE;
+	public static ExecutorService getExecutor(final Workload workload) {
+		return EXECUTORS.get(workload);
+	}
+
+	public static Collection<BulkheadExecutor> getExecutors() {
+		return Collections.unmodifiableCollection(EXECUTORS.values());
+	}
+
+	public static ScheduledExecutorService getSchedulerService() {
+		return SCHEDULER_SERVICE;
 	}
-}
\ No newline at end of file
+}
@@ -32,6 +32,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Function;
 
 public class ImageUtil {
@@ -42,7 +43,7 @@ public class ImageUtil {
 
 	public static Image getImageInternal(final String url) {
 
-		final Result<Image> imageResponse = TwitchUtil.getTwitch().imageUtil.getOther(url, CONVERTER);
+		final Result<Image> imageResponse = TwitchUtil.getTwitchUnlimited().imageUtil.getOther(url, CONVERTER);
 
 		if (!imageResponse.isOk()) {
 			LOGGER.error("failed to load image" + url, imageResponse.getErrorRaw());
@@ -54,7 +55,7 @@ public class ImageUtil {
 
 	public static ImageView getGameBoxFromTwitch(final String game) {
 
-		final Result<Image> imageResponse = TwitchUtil.getTwitch().imageUtil.getGameBox(game, ImageSize.SMALL_GAME_BOX, CONVERTER);
+		final Result<Image> imageResponse = TwitchUtil.getTwitchUnlimited().imageUtil.getGameBox(game, ImageSize.SMALL_GAME_BOX, CONVERTER);
 
 		if (!imageResponse.isOk()) {
 			LOGGER.error("exception getting game logo for " + game, imageResponse.getErrorRaw());
@@ -66,7 +67,7 @@ public class ImageUtil {
 
 	public static Image getPreviewFromTwitch(final Channel channel) {
 
-		final Result<Image> imageResponse = TwitchUtil.getTwitch().imageUtil.getStreamPreview(channel.getName(), ImageSize.LARGE_PREVIEW, CONVERTER);
+		final Result<Image> imageResponse = TwitchUtil.getTwitchUnlimited().imageUtil.getStreamPreview(channel.getName(), ImageSize.LARGE_PREVIEW, CONVERTER);
 
 		if (!imageResponse.isOk()) {
 			LOGGER.error("exception getting channel preview for " + channel, imageResponse.getErrorRaw());
@@ -86,7 +87,11 @@ public class ImageUtil {
 	}
 
 	public static void updatePreviewAsyncFromTwitch(final Channel channel) {
-		ExecutorUtil.getExecutorService().submit(new AsyncImageUpdateTask(channel));
+		try {
+			ExecutorUtil.getExecutor(Workload.IMAGES).submit(new AsyncImageUpdateTask(channel));
+		} catch (final RejectedExecutionException e) {
+			LOGGER.debug("skipped preview update for " + channel, e);
+		}
 	}
 
 	public static class AsyncImageUpdateTask implements Callable<Void> {
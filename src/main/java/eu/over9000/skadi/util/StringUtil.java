@@ -24,7 +24,6 @@ package eu.over9000.skadi.util;
 
 import eu.over9000.skadi.model.Channel;
 
-import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,15 +34,6 @@ public class StringUtil {
 	private static final long SIZE_GB = SIZE_KB * SIZE_MB;
 	private static final Pattern urlPattern = Pattern.compile("http(s)*://(www\\.)*twitch\\.tv/(" + USERNAME_REGEX + ")(/.*)?");
 
-	public static boolean containsIgnoreCase(final List<String> list, final String lookup) {
-		for (final String current : list) {
-			if (current.equalsIgnoreCase(lookup)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	public static String extractUsernameFromURL(final String url) {
 		final Matcher urlMatcher = urlPattern.matcher(url);
 
@@ -34,6 +34,7 @@ import java.util.concurrent.TimeUnit;
 public class TimeUtil {
 
 	private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+	private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("EEE HH:mm");
 
 	/**
 	 * Convert a millisecond duration to a string format
@@ -85,4 +86,8 @@ public class TimeUtil {
 	public static String getStringFromMillis(final Number millis) {
 		return FORMATTER.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis.longValue()), ZoneId.systemDefault()));
 	}
+
+	public static String getDayStringFromMillis(final Number millis) {
+		return DAY_FORMATTER.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis.longValue()), ZoneId.systemDefault()));
+	}
 }
@@ -23,8 +23,11 @@
 package eu.over9000.skadi.util;
 
 import eu.over9000.cathode.Twitch;
+import eu.over9000.skadi.remote.RequestRateLimiter;
+import eu.over9000.skadi.remote.StreamBatchClient;
 
 import java.net.URI;
+import java.util.function.Function;
 
 public class TwitchUtil {
 
@@ -32,7 +35,10 @@ public class TwitchUtil {
 	private static final String AUTH_REDIRECT = "https://janstrauss.github.io/skadi/auth/";
 	private static final String AUTH_SCOPE = "user_follows_edit";
 
+	private static final RequestRateLimiter RATE_LIMITER = new RequestRateLimiter(10, 30);
+
 	private static Twitch twitch;
+	private static StreamBatchClient streamBatchClient;
 
 	public static void init() {
 		init(null);
@@ -40,12 +46,36 @@ public class TwitchUtil {
 
 	public static void init(final String authToken) {
 		twitch = new Twitch(SKADI_CLIENT_ID, authToken);
+		streamBatchClient = new StreamBatchClient(StreamBatchClient.DEFAULT_API_URL, SKADI_CLIENT_ID, RATE_LIMITER);
+	}
+
+	public static void configureRateLimit(final double requestsPerSecond, final int burst) {
+		RATE_LIMITER.configure(requestsPerSecond, burst);
+	}
+
+	/**
+	 * Makes one API request, waiting for the shared rate limiter first. The call must send exactly one request.
+	 */
+	public static <T> T request(final Function<Twitch, T> call) {
+		RATE_LIMITER.acquire();
+		return call.apply(twitch);
 	}
 
-	public static Twitch getTwitch() {
+	/**
+	 * For requests that are not counted against the API limit, like images from the CDN.
+	 */
+	public static Twitch getTwitchUnlimited() {
 		return twitch;
 	}
 
+	public static RequestRateLimiter getRateLimiter() {
+		return RATE_LIMITER;
+	}
+
+	public static StreamBatchClient getStreamBatchClient() {
+		return streamBatchClient;
+	}
+
 	public static URI buildAuthUrl() {
 		return Twitch.buildTokenAuthURI(SKADI_CLIENT_ID, AUTH_REDIRECT, AUTH_SCOPE);
 	}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.util;
+
+/**
+ * The classes of background work, each runs on its own {@link BulkheadExecutor} so one workload can not use up the
+ * threads or queue of another. Tasks that wait for other tasks must use a different workload than the tasks they wait
+ * for.
+ */
+public enum Workload {
+	/**
+	 * channel metadata requests
+	 */
+	POLLING("poll", 16, 1000),
+	/**
+	 * previews, emotes and other images
+	 */
+	IMAGES("image", 8, 1000),
+	/**
+	 * retrieval of the panel and emote lists shown in the detail pane
+	 */
+	DETAIL_PANE("detail", 4, 100),
+	/**
+	 * markdown rendering of channel panels
+	 */
+	PANEL_CONSTRUCTION("panel", 4, 500),
+	/**
+	 * external processes like livestreamer and the browser
+	 */
+	PROCESSES("process", 4, 100),
+	/**
+	 * follow import and synchronisation with twitch
+	 */
+	SYNC("sync", 8, 5000),
+	/**
+	 * ui services and everything else, including the tasks waiting for other workloads
+	 */
+	GENERAL("general", 16, 1000);
+
+	private final String threadName;
+	private final int threads;
+	private final int queueCapacity;
+
+	Workload(final String threadName, final int threads, final int queueCapacity) {
+		this.threadName = threadName;
+		this.threads = threads;
+		this.queueCapacity = queueCapacity;
+	}
+
+	public String getThreadName() {
+		return threadName;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+}
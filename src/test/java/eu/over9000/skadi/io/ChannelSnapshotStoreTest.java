@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.io;
+
+import eu.over9000.skadi.model.Channel;
+import eu.over9000.skadi.remote.data.ChannelMetadata;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelSnapshotStoreTest {
+
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSaveAndRestore() throws Exception {
+		final Path file = folder.getRoot().toPath().resolve("channels.dat");
+
+		final Channel live = new Channel("LiveChannel");
+		live.updateFrom(new ChannelMetadata("some title", 1234L, HOUR, true, "some game", "http://logo", 10L, 20L, true));
+		final Channel offline = new Channel("offline");
+		offline.updateFrom(new ChannelMetadata(null, 0L, 0L, false, null, null, null, null, null));
+		new ChannelSnapshotStore(file).save(Arrays.asList(live, offline, new Channel("unpolled")));
+
+		final Channel restoredLive = new Channel("livechannel");
+		final Channel restoredOffline = new Channel("offline");
+		final Channel unknown = new Channel("unknown");
+		final ChannelSnapshotStore store = new ChannelSnapshotStore(file);
+		assertEquals(2, store.restore(Arrays.asList(restoredLive, restoredOffline, unknown)));
+
+		assertTrue(restoredLive.isStale());
+		assertEquals("some title", restoredLive.getTitle());
+		assertEquals("some game", restoredLive.getGame());
+		assertEquals("http://logo", restoredLive.getLogoURL());
+		assertEquals(1234, restoredLive.getViewer());
+		assertTrue(restoredLive.isOnline());
+		assertTrue(restoredLive.getUptime() >= HOUR);
+		assertEquals(live.getLastUpdatedMillis(), restoredLive.getLastUpdatedMillis());
+		assertTrue(restoredLive.getViewerHistory().isEmpty());
+
+		assertTrue(restoredOffline.isStale());
+		assertFalse(restoredOffline.isOnline());
+		assertEquals("-", restoredOffline.getTitle());
+
+		assertFalse(unknown.isStale());
+		assertNull(unknown.isOnline());
+
+		restoredLive.updateFrom(new ChannelMetadata(null, 1300L, HOUR, true, null, null, null, null, null));
+		assertFalse(restoredLive.isStale());
+
+		// the live status alone does not refresh title, game and logo
+		restoredOffline.updateFrom(ChannelMetadata.stillOffline());
+		assertTrue(restoredOffline.isStale());
+		restoredOffline.updateFrom(new ChannelMetadata("new title", 0L, 0L, false, "new game", null, null, null, null));
+		assertFalse(restoredOffline.isStale());
+	}
+
+	@Test
+	public void testRestoredChannelDoesNotComeOnline() throws Exception {
+		final Path file = folder.getRoot().toPath().resolve("channels.dat");
+
+		final Channel offline = new Channel("offline");
+		offline.updateFrom(new ChannelMetadata("title", 0L, 0L, false, "game", null, null, null, null));
+		new ChannelSnapshotStore(file).save(Arrays.asList(offline));
+
+		final Channel restored = new Channel("offline");
+		new ChannelSnapshotStore(file).restore(Arrays.asList(restored));
+		final AtomicInteger goLives = new AtomicInteger();
+		restored.onlineProperty().addListener((observable, oldValue, newValue) -> {
+			if (restored.cameOnline()) {
+				goLives.incrementAndGet();
+			}
+		});
+
+		// live at the first poll, it may have gone live at any time while the client was closed
+		restored.updateFrom(new ChannelMetadata("title", 100L, HOUR, true, "game", null, null, null, null));
+		assertFalse(restored.isStale());
+		assertFalse(restored.cameOnline());
+		assertNull(restored.getWasOnline());
+		assertEquals(0, goLives.get());
+
+		restored.updateFrom(new ChannelMetadata("title", 0L, 0L, false, "game", null, null, null, null));
+		assertFalse(restored.cameOnline());
+		assertEquals(0, goLives.get());
+	}
+
+	@Test
+	public void testStaleChannelKeepsStreamStart() throws Exception {
+		final Path file = folder.getRoot().toPath().resolve("channels.dat");
+
+		final Channel live = new Channel("live");
+		live.updateFrom(new ChannelMetadata("title", 100L, HOUR, true, "game", null, null, null, null));
+		new ChannelSnapshotStore(file).save(Arrays.asList(live));
+		final long streamStart = live.getLastUpdatedMillis() - HOUR;
+
+		// restored, not refreshed and saved again, e.g. a short session while offline
+		final ChannelSnapshotStore store = new ChannelSnapshotStore(file);
+		final Channel restored = new Channel("live");
+		store.restore(Arrays.asList(restored));
+		Thread.sleep(20);
+		store.save(Arrays.asList(restored));
+
+		final Channel again = new Channel("live");
+		new ChannelSnapshotStore(file).restore(Arrays.asList(again));
+		final long restoredStart = System.currentTimeMillis() - again.getUptime();
+		assertTrue(Math.abs(restoredStart - streamStart) < 1000);
+	}
+
+	@Test
+	public void testRestoreManyChannels() throws Exception {
+		final Path file = folder.getRoot().toPath().resolve("channels.dat");
+		final List<Channel> channels = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			final Channel channel = new Channel("channel" + i);
+			channel.updateFrom(new ChannelMetadata("title " + i, (long) i, HOUR, i % 2 == 0, "game " + i % 50, "http://logo/" + i, 10L, 20L, false));
+			channels.add(channel);
+		}
+		new ChannelSnapshotStore(file).save(channels);
+
+		final List<Channel> restored = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			restored.add(new Channel("channel" + i));
+		}
+		assertEquals(1000, new ChannelSnapshotStore(file).restore(restored));
+
+		final Channel last = restored.get(999);
+		assertEquals("title 999", last.getTitle());
+		assertEquals("game 49", last.getGame());
+		assertEquals(Boolean.FALSE, last.isOnline());
+		assertTrue(last.isStale());
+	}
+}
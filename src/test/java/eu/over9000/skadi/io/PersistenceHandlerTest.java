@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.io;
+
+import eu.over9000.skadi.model.StateContainer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PersistenceHandlerTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSaveRequestsAreCoalesced() throws Exception {
+		final Path directory = folder.getRoot().toPath();
+		final PersistenceHandler handler = new PersistenceHandler(directory, 200);
+		final StateContainer state = handler.loadState();
+		final int initialWrites = handler.getWriteCount();
+
+		// like dragging the grid scale slider
+		for (int i = 0; i <= 500; i++) {
+			state.setGridScale(i / 500.0);
+			handler.saveState(state);
+		}
+		state.setChannels(Arrays.asList("first", "second"));
+		handler.saveState(state);
+		handler.flush();
+
+		assertTrue(handler.getWriteCount() - initialWrites <= 2);
+		assertFalse(Files.exists(directory.resolve(PersistenceHandler.PERSISTENCE_FILE + ".tmp")));
+
+		final StateContainer loaded = new PersistenceHandler(directory, 0).loadState();
+		assertEquals(1.0, loaded.getGridScale(), 0);
+		assertEquals(Arrays.asList("first", "second"), loaded.getChannels());
+	}
+
+	@Test
+	public void testScheduledWrite() throws Exception {
+		final Path directory = folder.getRoot().toPath();
+		final PersistenceHandler handler = new PersistenceHandler(directory, 50);
+		final StateContainer state = handler.loadState();
+		final int initialWrites = handler.getWriteCount();
+
+		state.setShowGrid(true);
+		handler.saveState(state);
+		assertEquals(initialWrites, handler.getWriteCount());
+
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (handler.getWriteCount() == initialWrites && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(initialWrites + 1, handler.getWriteCount());
+		assertTrue(new PersistenceHandler(directory, 0).loadState().isShowGrid());
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.io;
+
+import eu.over9000.skadi.model.StateContainer;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StateCodecTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static StateContainer buildState(final int channels) {
+		final StateContainer state = new StateContainer();
+		final List<String> names = new ArrayList<>(channels);
+		for (int i = 0; i < channels; i++) {
+			names.add("channel_" + i);
+		}
+		state.setChannels(names);
+		state.getLivestreamerArgs().addAll(Arrays.asList("--player-passthrough", "hls"));
+		state.setExecutableChrome("/usr/bin/chrome \"quoted\"");
+		state.setDisplayNotifications(false);
+		state.setShowGrid(true);
+		state.setWindowWidth(1920.5);
+		state.setGridScale(0.25);
+		state.setAuthToken("token");
+		state.setPollIntervalLive(30);
+		state.setApiRequestsPerSecond(2.5);
+		state.setViewerHistoryHours(48);
+		return state;
+	}
+
+	private static void assertState(final StateContainer expected, final StateContainer actual) {
+		assertEquals(expected.getChannels(), actual.getChannels());
+		assertEquals(expected.getLivestreamerArgs(), actual.getLivestreamerArgs());
+		assertEquals(expected.getExecutableChrome(), actual.getExecutableChrome());
+		assertEquals(expected.getExecutableLivestreamer(), actual.getExecutableLivestreamer());
+		assertEquals(expected.isDisplayNotifications(), actual.isDisplayNotifications());
+		assertEquals(expected.isShowGrid(), actual.isShowGrid());
+		assertEquals(expected.getWindowWidth(), actual.getWindowWidth(), 0);
+		assertEquals(expected.getWindowHeight(), actual.getWindowHeight(), 0);
+		assertEquals(expected.getGridScale(), actual.getGridScale(), 0);
+		assertEquals(expected.getAuthToken(), actual.getAuthToken());
+		assertEquals(expected.getPollIntervalLive(), actual.getPollIntervalLive());
+		assertEquals(expected.getApiRequestsPerSecond(), actual.getApiRequestsPerSecond(), 0);
+		assertEquals(expected.getViewerHistoryHours(), actual.getViewerHistoryHours());
+	}
+
+	// the format written by the jaxb based persistence of earlier versions
+	private static String buildLegacyXml(final StateContainer state) {
+		final StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<skadi_data>\n    <channels>\n");
+		state.getChannels().forEach(channel -> xml.append("        <channel>").append(channel).append("</channel>\n"));
+		xml.append("    </channels>\n    <livestreamer_args>\n");
+		state.getLivestreamerArgs().forEach(arg -> xml.append("        <arg>").append(arg).append("</arg>\n"));
+		xml.append("    </livestreamer_args>\n");
+		xml.append("    <executable_chrome>").append(state.getExecutableChrome().replace("\"", "&quot;")).append("</executable_chrome>\n");
+		xml.append("    <executable_livestreamer>").append(state.getExecutableLivestreamer()).append("</executable_livestreamer>\n");
+		xml.append("    <display_notifications>").append(state.isDisplayNotifications()).append("</display_notifications>\n");
+		xml.append("    <show_grid>").append(state.isShowGrid()).append("</show_grid>\n");
+		xml.append("    <window_width>").append(state.getWindowWidth()).append("</window_width>\n");
+		xml.append("    <window_height>").append(state.getWindowHeight()).append("</window_height>\n");
+		xml.append("    <grid_scale>").append(state.getGridScale()).append("</grid_scale>\n");
+		xml.append("    <auth_token>").append(state.getAuthToken()).append("</auth_token>\n");
+		xml.append("    <poll_interval_live>").append(state.getPollIntervalLive()).append("</poll_interval_live>\n");
+		xml.append("    <api_requests_per_second>").append(state.getApiRequestsPerSecond()).append("</api_requests_per_second>\n");
+		xml.append("    <viewer_history_hours>").append(state.getViewerHistoryHours()).append("</viewer_history_hours>\n");
+		xml.append("    <removed_setting>1</removed_setting>\n");
+		xml.append("</skadi_data>\n");
+		return xml.toString();
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		final StateContainer state = buildState(100);
+		final StringWriter writer = new StringWriter();
+		StateCodec.write(state, writer);
+
+		assertState(state, StateCodec.read(new StringReader(writer.toString())));
+	}
+
+	@Test
+	public void testUnknownAndMissingKeys() throws Exception {
+		final StateContainer state = StateCodec.read(new StringReader("{\"show_grid\":true,\"removed_setting\":{\"a\":[1,2]},\"auth_token\":null}"));
+
+		assertTrue(state.isShowGrid());
+		assertNull(state.getAuthToken());
+		assertTrue(state.getChannels().isEmpty());
+		assertEquals(new StateContainer().getPollIntervalLive(), state.getPollIntervalLive());
+	}
+
+	@Test
+	public void testLegacyMigration() throws Exception {
+		final Path directory = folder.getRoot().toPath();
+		final StateContainer state = buildState(20);
+		final Path legacyFile = directory.resolve(PersistenceHandler.LEGACY_PERSISTENCE_FILE);
+		Files.write(legacyFile, buildLegacyXml(state).getBytes(StandardCharsets.UTF_8));
+
+		assertState(state, new PersistenceHandler(directory, 0).loadState());
+		assertTrue(Files.exists(directory.resolve(PersistenceHandler.PERSISTENCE_FILE)));
+		assertTrue(Files.exists(legacyFile));
+
+		// the json file is used from now on
+		Files.write(legacyFile, "not xml".getBytes(StandardCharsets.UTF_8));
+		assertState(state, new PersistenceHandler(directory, 0).loadState());
+	}
+
+	@Test
+	public void testMalformedFallsBackToDefaults() throws Exception {
+		final Path directory = folder.getRoot().toPath();
+		Files.write(directory.resolve(PersistenceHandler.PERSISTENCE_FILE), "{\"show_grid\":\"maybe\"".getBytes(StandardCharsets.UTF_8));
+
+		assertFalse(new PersistenceHandler(directory, 0).loadState().isShowGrid());
+	}
+
+	@Test
+	public void testSmallerThanXml() throws Exception {
+		final StateContainer state = buildState(10_000);
+		final StringWriter writer = new StringWriter();
+		StateCodec.write(state, writer);
+
+		assertTrue(writer.toString().length() < buildLegacyXml(state).length());
+	}
+
+	/**
+	 * Manual benchmark comparing the time to the first loaded state and the throughput for large channel lists with the
+	 * jaxb persistence of earlier versions. The first load includes class loading and, for jaxb, the context creation,
+	 * so it only means something in a fresh JVM.
+	 */
+	@Ignore("manual benchmark")
+	@Test
+	public void testBenchmark() throws Exception {
+		final StateContainer state = buildState(10_000);
+		final String xml = buildLegacyXml(state);
+		final StringWriter jsonWriter = new StringWriter();
+		StateCodec.write(state, jsonWriter);
+		final String json = jsonWriter.toString();
+
+		long start = System.nanoTime();
+		StateCodec.read(new StringReader(json));
+		final long firstCodec = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		JAXBContext.newInstance(LegacyState.class).createUnmarshaller().unmarshal(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+		final long firstJaxb = System.nanoTime() - start;
+
+		final int iterations = 50;
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			final StringWriter writer = new StringWriter();
+			StateCodec.write(state, writer);
+			StateCodec.read(new StringReader(writer.toString()));
+		}
+		final long codecThroughput = System.nanoTime() - start;
+
+		final JAXBContext context = JAXBContext.newInstance(LegacyState.class);
+		final LegacyState legacyState = (LegacyState) context.createUnmarshaller().unmarshal(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			final StringWriter writer = new StringWriter();
+			context.createMarshaller().marshal(legacyState, writer);
+			context.createUnmarshaller().unmarshal(new StringReader(writer.toString()));
+		}
+		final long jaxbThroughput = System.nanoTime() - start;
+
+		assertTrue("first load with 10000 channels: codec " + TimeUnit.NANOSECONDS.toMillis(firstCodec) + "ms, jaxb " + TimeUnit.NANOSECONDS.toMillis(firstJaxb) + "ms", firstCodec < firstJaxb);
+		assertTrue("write and read with 10000 channels: codec " + TimeUnit.NANOSECONDS.toMicros(codecThroughput / iterations) + "us, jaxb " + TimeUnit.NANOSECONDS.toMicros(jaxbThroughput / iterations) + "us", codecThroughput < jaxbThroughput);
+	}
+
+	@XmlRootElement(name = "skadi_data")
+	@XmlAccessorType(XmlAccessType.FIELD)
+	static class LegacyState {
+		@XmlElementWrapper(name = "channels")
+		@XmlElement(name = "channel")
+		List<String> channels = new ArrayList<>();
+		@XmlElementWrapper(name = "livestreamer_args")
+		@XmlElement(name = "arg")
+		List<String> livestreamerArgs = new ArrayList<>();
+		@XmlElement(name = "executable_chrome")
+		String executableChrome;
+		@XmlElement(name = "show_grid")
+		boolean showGrid;
+		@XmlElement(name = "window_width")
+		double windowWidth;
+		@XmlElement(name = "grid_scale")
+		double gridScale;
+		@XmlElement(name = "auth_token")
+		String authToken;
+		@XmlElement(name = "poll_interval_live")
+		int pollIntervalLive;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimeSeriesFileTest {
+
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+	private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static List<long[]> readAll(final TimeSeriesFile file, final long from) {
+		final List<long[]> samples = new ArrayList<>();
+		file.read(from, (time, viewer) -> samples.add(new long[]{time, viewer}));
+		return samples;
+	}
+
+	@Test
+	public void testAppendAndReopen() throws Exception {
+		final Path path = folder.getRoot().toPath().resolve("channel.vh");
+
+		try (TimeSeriesFile file = TimeSeriesFile.open(path)) {
+			for (int i = 0; i < 10_000; i++) {
+				file.append(i * MINUTE, 1000 + (i % 200) - 100);
+			}
+			// one byte time delta and one or two bytes viewer delta
+			assertTrue(file.getSize() < 10_000 * 4);
+		}
+
+		try (TimeSeriesFile file = TimeSeriesFile.open(path)) {
+			final List<long[]> samples = readAll(file, 0);
+			assertEquals(10_000, samples.size());
+			for (int i = 0; i < samples.size(); i++) {
+				assertEquals(i * MINUTE, samples.get(i)[0]);
+				assertEquals(1000 + (i % 200) - 100, samples.get(i)[1]);
+			}
+
+			assertEquals(100, readAll(file, 9_900 * MINUTE).size());
+		}
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		final long now = 30 * DAY;
+
+		try (TimeSeriesFile file = TimeSeriesFile.open(folder.getRoot().toPath().resolve("channel.vh"))) {
+			// one sample every 20 seconds, alternating between 100 and 200 viewers
+			for (long time = 0; time < now; time += 20_000) {
+				file.append(time, (time / 20_000) % 2 == 0 ? 100 : 200);
+			}
+			final int rawSamples = file.getRawCount();
+
+			assertTrue(file.compact(now));
+			assertFalse(file.compact(now));
+
+			assertEquals(TimeUnit.DAYS.toSeconds(2) / 20, file.getRawCount());
+			assertEquals(TimeUnit.DAYS.toMinutes(5), file.getBucketCount(TimeSeriesFile.Resolution.MINUTE));
+			assertEquals(TimeUnit.DAYS.toHours(23), file.getBucketCount(TimeSeriesFile.Resolution.HOUR));
+			assertEquals(0, file.getBucketCount(TimeSeriesFile.Resolution.DAY));
+			assertTrue(file.getRawCount() < rawSamples);
+
+			final List<long[]> samples = readAll(file, 0);
+			for (int i = 1; i < samples.size(); i++) {
+				assertTrue(samples.get(i - 1)[0] < samples.get(i)[0]);
+			}
+			// buckets report the average of the samples they contain
+			assertEquals(30 * MINUTE, samples.get(0)[0]);
+			assertEquals(150, samples.get(0)[1]);
+			assertEquals(now - 20_000, samples.get(samples.size() - 1)[0]);
+
+			// appending continues after the compacted samples
+			file.append(now, 300);
+			final List<long[]> afterAppend = readAll(file, now);
+			assertEquals(1, afterAppend.size());
+			assertEquals(300, afterAppend.get(0)[1]);
+		}
+	}
+
+	@Test
+	public void testInterruptedCompaction() throws Exception {
+		final Path path = folder.getRoot().toPath().resolve("channel.vh");
+		final Path backup = folder.getRoot().toPath().resolve("backup");
+
+		try (TimeSeriesFile file = TimeSeriesFile.open(path)) {
+			for (long time = 0; time < 5 * DAY; time += MINUTE) {
+				file.append(time, 42);
+			}
+			file.compact(5 * DAY);
+		}
+		Files.copy(path, backup);
+
+		// the journal holds the compacted content, the file itself was left half written
+		try (TimeSeriesFile file = TimeSeriesFile.open(path)) {
+			file.append(5 * DAY, 43);
+		}
+		Files.move(backup, path.resolveSibling("channel.vh.compact"));
+		Files.write(path, new byte[128]);
+
+		try (TimeSeriesFile file = TimeSeriesFile.open(path)) {
+			assertFalse(Files.exists(path.resolveSibling("channel.vh.compact")));
+			final List<long[]> samples = readAll(file, 0);
+			assertEquals(5 * DAY - MINUTE, samples.get(samples.size() - 1)[0]);
+			assertEquals(42, samples.get(samples.size() - 1)[1]);
+		}
+	}
+
+	@Test
+	public void testDeleteAndMarkedDeletion() throws Exception {
+		final Path path = folder.getRoot().toPath().resolve("channel.vh");
+
+		try (TimeSeriesFile file = TimeSeriesFile.open(path)) {
+			file.append(MINUTE, 42);
+			file.delete();
+		}
+		assertFalse(Files.exists(path));
+
+		try (TimeSeriesFile file = TimeSeriesFile.open(path)) {
+			assertEquals(0, file.getRawCount());
+			file.append(MINUTE, 42);
+		}
+
+		// left behind by a deletion that failed while the file was still mapped
+		Files.write(path.resolveSibling("channel.vh.deleted"), new byte[0]);
+		try (TimeSeriesFile file = TimeSeriesFile.open(path)) {
+			assertEquals(0, file.getRawCount());
+		}
+		assertFalse(Files.exists(path.resolveSibling("channel.vh.deleted")));
+	}
+
+	@Test
+	public void testReadWeek() throws Exception {
+		final long now = 60 * DAY;
+		final Path path = folder.getRoot().toPath().resolve("channel.vh");
+
+		try (TimeSeriesFile file = TimeSeriesFile.open(path)) {
+			for (long time = 0; time < now; time += MINUTE) {
+				file.append(time, 1000 + (time / MINUTE) % 500);
+			}
+			file.compact(now);
+		}
+
+		try (TimeSeriesFile file = TimeSeriesFile.open(path)) {
+			final List<long[]> samples = readAll(file, now - 7 * DAY);
+			assertEquals(TimeUnit.DAYS.toMinutes(2) + TimeUnit.DAYS.toMinutes(5), samples.size());
+			assertEquals(now - 7 * DAY + MINUTE / 2, samples.get(0)[0]);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.io;
+
+import eu.over9000.skadi.model.Channel;
+import eu.over9000.skadi.model.ViewerHistory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ViewerHistoryStoreTest {
+
+	private static final int CHANNEL_COUNT = ViewerHistoryStore.MAX_OPEN_FILES * 3;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testOpenFilesAreBounded() throws Exception {
+		final Path directory = folder.getRoot().toPath();
+		final long now = System.currentTimeMillis();
+
+		final ViewerHistoryStore store = new ViewerHistoryStore(directory, Runnable::run);
+		final List<Channel> channels = new ArrayList<>();
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			final Channel channel = new Channel("channel_" + i);
+			store.register(channel);
+			channels.add(channel);
+		}
+		for (int sample = 0; sample < 3; sample++) {
+			for (int i = 0; i < CHANNEL_COUNT; i++) {
+				channels.get(i).getViewerHistory().add(now + sample * 1000, i);
+			}
+			assertTrue(store.getOpenFileCount() <= ViewerHistoryStore.MAX_OPEN_FILES);
+		}
+		store.stop();
+		assertEquals(0, store.getOpenFileCount());
+
+		final ViewerHistoryStore reopened = new ViewerHistoryStore(directory, Runnable::run);
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			final Channel channel = new Channel("channel_" + i);
+			reopened.register(channel);
+			assertTrue(channel.getViewerHistory().isEmpty());
+			final ViewerHistory stored = reopened.loadHistory(channel).get(5, TimeUnit.SECONDS);
+			assertEquals(3, stored.size());
+			assertEquals(i, stored.getViewer(2));
+		}
+		assertTrue(reopened.getOpenFileCount() <= ViewerHistoryStore.MAX_OPEN_FILES);
+		reopened.stop();
+	}
+
+	@Test
+	public void testRegisterDoesNotOpenFiles() throws Exception {
+		final ViewerHistoryStore store = new ViewerHistoryStore(folder.getRoot().toPath(), Runnable::run);
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			store.register(new Channel("channel_" + i));
+		}
+		assertEquals(0, store.getOpenFileCount());
+		store.stop();
+	}
+
+	@Test
+	public void testLoadWeekFromRollups() throws Exception {
+		final ViewerHistoryStore store = new ViewerHistoryStore(folder.getRoot().toPath(), Runnable::run);
+		final Channel channel = new Channel("channel");
+		store.register(channel);
+
+		final long now = System.currentTimeMillis();
+		final long interval = TimeUnit.MINUTES.toMillis(10);
+		final long start = now - TimeUnit.DAYS.toMillis(6);
+		int samples = 0;
+		for (long time = start; time <= now; time += interval) {
+			channel.getViewerHistory().add(time, 100);
+			samples++;
+		}
+		store.compact();
+
+		final ViewerHistory stored = store.readHistory(channel);
+		assertEquals(samples, stored.size());
+		assertTrue(stored.getTime(0) < now - TimeUnit.DAYS.toMillis(5));
+		// the in-memory history only keeps its retention
+		assertTrue(channel.getViewerHistory().getTime(0) > now - TimeUnit.DAYS.toMillis(2));
+		store.stop();
+	}
+
+	@Test
+	public void testFileNameIgnoresDefaultLocale() throws Exception {
+		final Locale defaultLocale = Locale.getDefault();
+		Locale.setDefault(new Locale("tr", "TR"));
+		try {
+			final ViewerHistoryStore store = new ViewerHistoryStore(folder.getRoot().toPath(), Runnable::run);
+			final Channel channel = new Channel("IRON");
+			store.register(channel);
+			channel.getViewerHistory().add(System.currentTimeMillis(), 1);
+			store.stop();
+		} finally {
+			Locale.setDefault(defaultLocale);
+		}
+		// the turkish lower case of I is a dotless i
+		assertTrue(Files.exists(folder.getRoot().toPath().resolve("iron.vh")));
+	}
+
+	@Test
+	public void testRemovedHistoryIsNotRestored() throws Exception {
+		final Path directory = folder.getRoot().toPath();
+		final ViewerHistoryStore store = new ViewerHistoryStore(directory, Runnable::run);
+
+		final Channel channel = new Channel("channel");
+		store.register(channel);
+		channel.getViewerHistory().add(System.currentTimeMillis(), 42);
+		store.unregister(channel);
+		assertFalse(Files.exists(directory.resolve("channel.vh")));
+
+		final Channel readded = new Channel("channel");
+		store.register(readded);
+		assertTrue(store.readHistory(readded).isEmpty());
+		store.stop();
+	}
+}
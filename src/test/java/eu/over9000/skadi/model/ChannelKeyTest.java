@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ChannelKeyTest {
+
+	@Test
+	public void testCaseInsensitive() {
+		assertEquals(ChannelKey.of("SomeChannel"), ChannelKey.of("somechannel"));
+		assertEquals(ChannelKey.of("SomeChannel").hashCode(), ChannelKey.of("somechannel").hashCode());
+		assertEquals("somechannel", ChannelKey.of("SomeChannel").getName());
+		assertNotEquals(ChannelKey.of("somechannel"), ChannelKey.of("otherchannel"));
+	}
+
+	@Test
+	public void testChannelIdentity() {
+		final Channel first = new Channel("SomeChannel");
+		final Channel second = new Channel("somechannel");
+
+		assertEquals(first, second);
+		assertEquals(first.hashCode(), second.hashCode());
+		assertNotEquals(first, new Channel("otherchannel"));
+
+		final Set<Channel> channels = new HashSet<>(Arrays.asList(first, second, new Channel("otherchannel")));
+		assertEquals(2, channels.size());
+	}
+}
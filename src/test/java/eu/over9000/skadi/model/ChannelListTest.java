@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.model;
+
+import javafx.collections.ListChangeListener;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChannelListTest {
+
+	@Test
+	public void testUpdateFiresSingleChange() {
+		final ChannelList list = new ChannelList();
+		for (int i = 0; i < 10; i++) {
+			list.add(new Channel("channel" + i));
+		}
+
+		final List<String> events = new ArrayList<>();
+		list.addListener((ListChangeListener<Channel>) change -> events.add(change.toString()));
+
+		list.update(Arrays.asList(new Channel("channel1"), new Channel("channel2"), new Channel("channel7")), Arrays.asList(new Channel("added1"), new Channel("added2")));
+
+		assertEquals(1, events.size());
+		assertEquals(9, list.size());
+		assertEquals("channel0", list.get(0).getName());
+		assertEquals("channel3", list.get(1).getName());
+		assertEquals("channel8", list.get(5).getName());
+		assertEquals("added2", list.get(8).getName());
+	}
+
+	@Test
+	public void testUpdateReportsRemovedAndAdded() {
+		final ChannelList list = new ChannelList();
+		list.addAll(Arrays.asList(new Channel("a"), new Channel("b"), new Channel("c")));
+
+		final List<Channel> removed = new ArrayList<>();
+		final List<Channel> added = new ArrayList<>();
+		list.addListener((ListChangeListener<Channel>) change -> {
+			while (change.next()) {
+				removed.addAll(change.getRemoved());
+				added.addAll(change.getAddedSubList());
+			}
+		});
+
+		list.update(Collections.singleton(new Channel("b")), Collections.singleton(new Channel("d")));
+
+		assertEquals(Collections.singletonList(new Channel("b")), removed);
+		assertEquals(Collections.singletonList(new Channel("d")), added);
+
+		list.update(Collections.emptySet(), Collections.emptySet());
+		assertEquals(1, removed.size());
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.model;
+
+import eu.over9000.skadi.remote.data.ChannelMetadata;
+import javafx.beans.Observable;
+import javafx.beans.property.LongProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the change events one poll cycle causes in the channel list and in the viewer histories of the channels,
+ * compared to the list with an extractor that was used before.
+ */
+public class ChannelUpdateTest {
+
+	private static final int CHANNEL_COUNT = 800;
+
+	private final List<Channel> channels = new ArrayList<>();
+	private final AtomicInteger historyEvents = new AtomicInteger();
+
+	@Before
+	public void setUp() {
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			final Channel channel = new Channel("channel_" + i);
+			channel.getViewerHistory().addListener(observable -> historyEvents.incrementAndGet());
+			channels.add(channel);
+		}
+	}
+
+	private static ChannelMetadata buildMetadata(final int i, final boolean online) {
+		// new instances each time, like freshly parsed responses
+		return new ChannelMetadata(new String("title " + i), online ? 100L + i : 0L, online ? 3600_000L : 0L, online, new String("game"), new String("logo"), 10L, 100L, false);
+	}
+
+	@Test
+	public void testChangedFields() {
+		final Channel channel = channels.get(0);
+
+		assertEquals(EnumSet.of(ChannelField.TITLE, ChannelField.ONLINE, ChannelField.GAME, ChannelField.LOGO_URL, ChannelField.FOLLOWERS, ChannelField.VIEWS, ChannelField.PARTNER), channel.updateFrom(buildMetadata(0, false)));
+		assertTrue(channel.updateFrom(buildMetadata(0, false)).isEmpty());
+		assertEquals(EnumSet.of(ChannelField.TITLE), channel.updateFrom(buildMetadata(1, false)));
+
+		final Channel live = channels.get(1);
+		live.updateFrom(buildMetadata(1, true));
+		assertEquals(EnumSet.of(ChannelField.TITLE, ChannelField.VIEWER), live.updateFrom(buildMetadata(2, true)));
+	}
+
+	/**
+	 * The list the channel store used before, it fires an update for every change of these properties.
+	 */
+	private static ObservableList<Channel> buildExtractorList() {
+		return FXCollections.observableArrayList(c -> new Observable[]{c.titleProperty(), c.nameProperty(), c.uptimeProperty(), c.onlineProperty(), c.viewerProperty(), c.gameProperty()});
+	}
+
+	/**
+	 * The update before only changed fields were written.
+	 */
+	private static void writeAllFields(final Channel channel, final ChannelMetadata metadata) {
+		channel.titleProperty().set(metadata.getTitle());
+		channel.onlineProperty().set(metadata.getOnline());
+		channel.viewerProperty().set(metadata.getViewer());
+		channel.getViewerHistory().add(System.currentTimeMillis(), metadata.getViewer());
+		channel.gameProperty().set(metadata.getGame());
+		channel.uptimeProperty().set(metadata.getUptime());
+	}
+
+	/**
+	 * Reads the fields like the cells of the views do, an invalidated property only fires again once it was read.
+	 */
+	private static void render(final Channel channel) {
+		channel.getName();
+		channel.getTitle();
+		channel.getUptime();
+		channel.isOnline();
+		channel.getViewer();
+		channel.getGame();
+	}
+
+	private static ChannelMetadata buildPollMetadata(final int i, final int cycle) {
+		// every live channel gets a new viewer count, every 20th channel a new title
+		return buildMetadata(i % 20 == 0 ? i + cycle : i, i % 10 == 0, cycle);
+	}
+
+	private static ChannelMetadata buildMetadata(final int i, final boolean online, final int cycle) {
+		return new ChannelMetadata(new String("title " + i), online ? 100L + i + cycle : 0L, online ? 3600_000L : 0L, online, new String("game"), new String("logo"), 10L, 100L, false);
+	}
+
+	@Test
+	public void testEventsPerPollCycle() {
+		final List<Channel> extractorChannels = new ArrayList<>();
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			extractorChannels.add(new Channel("channel_" + i));
+		}
+		final ObservableList<Channel> extractorList = buildExtractorList();
+		extractorList.addAll(extractorChannels);
+		final ChannelList list = new ChannelList();
+		list.addAll(channels);
+
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			writeAllFields(extractorChannels.get(i), buildPollMetadata(i, 0));
+			channels.get(i).updateFrom(buildPollMetadata(i, 0));
+		}
+		extractorChannels.forEach(ChannelUpdateTest::render);
+		channels.forEach(ChannelUpdateTest::render);
+		historyEvents.set(0);
+
+		final int[] extractorEvents = new int[2];
+		extractorList.addListener((ListChangeListener<Channel>) c -> {
+			extractorEvents[0]++;
+			while (c.next()) {
+				if (c.wasUpdated()) {
+					extractorEvents[1] += c.getTo() - c.getFrom();
+					c.getList().subList(c.getFrom(), c.getTo()).forEach(ChannelUpdateTest::render);
+				}
+			}
+		});
+		final int[] listEvents = new int[2];
+		list.addListener((ListChangeListener<Channel>) c -> {
+			listEvents[0]++;
+			while (c.next()) {
+				if (c.wasUpdated()) {
+					listEvents[1] += c.getTo() - c.getFrom();
+					c.getList().subList(c.getFrom(), c.getTo()).forEach(ChannelUpdateTest::render);
+				}
+			}
+		});
+
+		// the same poll cycle on both lists
+		final List<Channel> changed = new ArrayList<>();
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			writeAllFields(extractorChannels.get(i), buildPollMetadata(i, 1));
+			final Channel channel = channels.get(i);
+			if (!channel.updateFrom(buildPollMetadata(i, 1)).isEmpty()) {
+				changed.add(channel);
+			}
+		}
+		list.fireUpdated(changed);
+
+		// 80 live channels with new viewers, 40 of them also with a new title
+		final int liveChannels = CHANNEL_COUNT / 10;
+		assertEquals(liveChannels, changed.size());
+		assertEquals(liveChannels + CHANNEL_COUNT / 20, extractorEvents[0]);
+		assertEquals(liveChannels + CHANNEL_COUNT / 20, extractorEvents[1]);
+		assertEquals(1, listEvents[0]);
+		assertEquals(liveChannels, listEvents[1]);
+
+		// every poll still adds one history sample per channel
+		assertEquals(CHANNEL_COUNT, historyEvents.get());
+	}
+
+	@Test
+	public void testColdPropertiesMaterializeLazily() {
+		final Channel channel = channels.get(0);
+		channel.updateFrom(buildMetadata(0, false));
+		assertEquals(10L, channel.getFollowers());
+
+		// a property created later starts with the current value and receives later updates
+		final LongProperty followers = channel.followersProperty();
+		assertEquals(10L, followers.get());
+		channel.updateFrom(new ChannelMetadata(null, null, null, null, null, null, 11L, null, null));
+		assertEquals(11L, followers.get());
+		assertEquals(11L, channel.getFollowers());
+	}
+}
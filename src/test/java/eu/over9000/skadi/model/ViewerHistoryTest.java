@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.model;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.chart.XYChart;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ViewerHistoryTest {
+
+	@Test
+	public void testCapacity() {
+		final ViewerHistory history = new ViewerHistory(100, Long.MAX_VALUE);
+		for (int i = 0; i < 250; i++) {
+			history.add(i, i * 10);
+		}
+
+		assertEquals(100, history.size());
+		assertEquals(250, history.getAddedCount());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(150 + i, history.getTime(i));
+			assertEquals((150 + i) * 10, history.getViewer(i));
+		}
+	}
+
+	@Test
+	public void testRetention() {
+		final ViewerHistory history = new ViewerHistory(100, 50);
+		for (int i = 0; i < 80; i++) {
+			history.add(i, 1);
+		}
+
+		// samples older than 79 - 50 are gone
+		assertEquals(51, history.size());
+		assertEquals(29, history.getTime(0));
+
+		history.add(1000, 7);
+		assertEquals(1, history.size());
+		assertEquals(7, history.getAverage());
+	}
+
+	@Test
+	public void testStatistics() {
+		final ViewerHistory history = new ViewerHistory(200, 5000, 300);
+		final Random random = new Random(42);
+		long time = 0;
+
+		for (int i = 0; i < 2000; i++) {
+			time += 1 + random.nextInt(40);
+			history.add(time, random.nextInt(1000));
+
+			long sum = 0;
+			long min = Long.MAX_VALUE;
+			long max = Long.MIN_VALUE;
+			long peakTime = 0;
+			long windowSum = 0;
+			int windowCount = 0;
+			for (int j = 0; j < history.size(); j++) {
+				final long viewer = history.getViewer(j);
+				sum += viewer;
+				min = Math.min(min, viewer);
+				if (viewer > max) {
+					max = viewer;
+					peakTime = history.getTime(j);
+				}
+				if (history.getTime(j) >= time - 300) {
+					windowSum += viewer;
+					windowCount++;
+				}
+			}
+
+			assertEquals(sum / history.size(), history.getAverage());
+			assertEquals(min, history.getMin());
+			assertEquals(max, history.getMax());
+			assertEquals(peakTime, history.getPeakTime());
+			assertEquals(windowSum / windowCount, history.getMovingAverage());
+		}
+	}
+
+	/**
+	 * Manual benchmark, the timing depends on the machine and the JIT.
+	 */
+	@Ignore("manual benchmark")
+	@Test
+	public void testUpdateCost() {
+		// warm up, then compare the cost of an update with a short and with a full history
+		measureUpdates(64);
+		measureUpdates(ViewerHistory.DEFAULT_CAPACITY);
+
+		final double small = measureUpdates(64);
+		final double large = measureUpdates(ViewerHistory.DEFAULT_CAPACITY);
+
+		// recomputing over the whole history would be about 30 times slower
+		assertTrue(String.format("ns per sample and statistics read: %.1f with 64 samples, %.1f with %d samples", small, large, ViewerHistory.DEFAULT_CAPACITY), large < small * 5);
+	}
+
+	private static double measureUpdates(final int capacity) {
+		final ViewerHistory history = new ViewerHistory(capacity, Long.MAX_VALUE);
+		final Random random = new Random(1);
+		for (int i = 0; i < capacity; i++) {
+			history.add(i, random.nextInt(10000));
+		}
+
+		final int rounds = 200_000;
+		long blackhole = 0;
+		final long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			history.add(capacity + i, random.nextInt(10000));
+			blackhole += history.getAverage() + history.getMin() + history.getMax() + history.getMovingAverage();
+		}
+		final long duration = System.nanoTime() - start;
+		assertTrue(blackhole != 0);
+		return (double) duration / rounds;
+	}
+
+	@Test
+	public void testEncoding() {
+		final ViewerHistory history = new ViewerHistory(1000, Long.MAX_VALUE);
+		final Random random = new Random(3);
+		final List<long[]> samples = new ArrayList<>();
+
+		long time = 1_500_000_000_000L;
+		long viewer = 5000;
+		for (int i = 0; i < 3000; i++) {
+			// mostly steady polls, sometimes a gap or a jump
+			time += i % 100 == 0 ? random.nextInt(10_000_000) : 60_000 + random.nextInt(1000) - 500;
+			viewer = Math.max(0, viewer + (i % 250 == 0 ? -viewer : random.nextInt(41) - 20));
+			history.add(time, viewer);
+			samples.add(new long[]{time, viewer});
+		}
+
+		assertEquals(1000, history.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(samples.get(2000 + i)[0], history.getTime(i));
+			assertEquals(samples.get(2000 + i)[1], history.getViewer(i));
+		}
+		// random access backwards works as well
+		for (int i = 999; i >= 0; i -= 37) {
+			assertEquals(samples.get(2000 + i)[1], history.getViewer(i));
+		}
+		assertTrue(history.getEncodedSize() < 1000 * 5);
+	}
+
+	/**
+	 * Manual benchmark, the measured heap depends on the garbage collector. testEncoding checks the encoded size.
+	 */
+	@Ignore("manual benchmark")
+	@Test
+	public void testMemoryFootprint() {
+		final int channels = 200;
+		final int samples = (int) TimeUnit.DAYS.toMinutes(1);
+
+		final long chartDataBytes = measureHeap(() -> {
+			final List<ObservableList<XYChart.Data<Number, Number>>> histories = new ArrayList<>();
+			for (int c = 0; c < channels; c++) {
+				final ObservableList<XYChart.Data<Number, Number>> history = FXCollections.observableArrayList();
+				fillDay(c, samples, (time, viewer) -> history.add(new XYChart.Data<>(time, viewer)));
+				histories.add(history);
+			}
+			return histories;
+		}) / channels;
+
+		final long compressedBytes = measureHeap(() -> {
+			final List<ViewerHistory> histories = new ArrayList<>();
+			for (int c = 0; c < channels; c++) {
+				final ViewerHistory history = new ViewerHistory();
+				fillDay(c, samples, history::add);
+				histories.add(history);
+			}
+			return histories;
+		}) / channels;
+
+		assertTrue("heap per channel after 24h of samples: " + chartDataBytes + " bytes as chart data, " + compressedBytes + " bytes compressed", compressedBytes * 20 < chartDataBytes);
+	}
+
+	private interface SampleSink {
+		void add(long time, long viewer);
+	}
+
+	private static void fillDay(final int channel, final int samples, final SampleSink sink) {
+		final Random random = new Random(channel);
+		long time = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+		long viewer = random.nextInt(10_000);
+		for (int i = 0; i < samples; i++) {
+			time += 60_000 + random.nextInt(1000) - 500;
+			viewer = Math.max(0, viewer + random.nextInt(101) - 50);
+			sink.add(time, viewer);
+		}
+	}
+
+	private static long measureHeap(final Supplier<Object> allocation) {
+		final long before = usedHeap();
+		final Object retained = allocation.get();
+		final long after = usedHeap();
+		assertTrue(retained != null);
+		return after - before;
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import eu.over9000.skadi.model.Channel;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptivePollIntervalPolicyTest {
+
+	private static final long LIVE = TimeUnit.SECONDS.toMillis(60);
+	private static final long RECENT = TimeUnit.SECONDS.toMillis(120);
+	private static final long DORMANT = TimeUnit.SECONDS.toMillis(600);
+	private static final long DORMANT_AFTER = TimeUnit.HOURS.toMillis(2);
+
+	private final AdaptivePollIntervalPolicy policy = new AdaptivePollIntervalPolicy(LIVE, RECENT, DORMANT, DORMANT_AFTER);
+
+	@Test
+	public void testIntervalByState() {
+		final long now = System.currentTimeMillis();
+		final Channel channel = new Channel("test");
+
+		assertEquals(LIVE, policy.getInterval(channel, 0, now));
+
+		channel.setOnline(true);
+		assertEquals(LIVE, policy.getInterval(channel, now, now));
+
+		channel.setOnline(false);
+		assertEquals(RECENT, policy.getInterval(channel, now - TimeUnit.MINUTES.toMillis(30), now));
+		assertEquals(DORMANT, policy.getInterval(channel, now - TimeUnit.HOURS.toMillis(3), now));
+		assertEquals(DORMANT, policy.getInterval(channel, 0, now));
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import eu.over9000.skadi.model.Channel;
+import eu.over9000.skadi.model.ChannelList;
+import eu.over9000.skadi.remote.data.ChannelMetadata;
+import javafx.collections.ListChangeListener;
+import javafx.collections.transformation.SortedList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelUpdateSinkTest {
+
+	private static final int CHANNEL_COUNT = 500;
+
+	private final ChannelList channels = new ChannelList();
+	private final List<Runnable> fxQueue = new ArrayList<>();
+	private final ChannelUpdateSink sink = new ChannelUpdateSink(channels, fxQueue::add);
+	private final SortedList<Channel> sorted = new SortedList<>(channels, (c1, c2) -> Long.compare(c2.getViewer(), c1.getViewer()));
+	private final AtomicInteger sortedChanges = new AtomicInteger();
+
+	@Before
+	public void setUp() {
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			final Channel channel = new Channel("channel_" + i);
+			channel.updateFrom(buildMetadata(i));
+			channels.add(channel);
+		}
+		sorted.addListener((ListChangeListener<Channel>) c -> sortedChanges.incrementAndGet());
+	}
+
+	private static ChannelMetadata buildMetadata(final long viewer) {
+		return new ChannelMetadata("title", viewer, 1000L, true, "game", "logo", 10L, 100L, false);
+	}
+
+	private void runFxQueue() {
+		final List<Runnable> queued = new ArrayList<>(fxQueue);
+		fxQueue.clear();
+		queued.forEach(Runnable::run);
+	}
+
+	@Test
+	public void testUpdatesAreAppliedAsOneBatch() {
+		// reverse the viewer order, one submit per channel like a forced refresh
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			sink.submit(channels.get(i), buildMetadata(CHANNEL_COUNT - i));
+		}
+		assertEquals(1, fxQueue.size());
+		assertEquals(0, sortedChanges.get());
+
+		runFxQueue();
+
+		assertEquals(1, sortedChanges.get());
+		assertEquals(channels.get(0), sorted.get(0));
+		assertEquals(channels.get(CHANNEL_COUNT - 1), sorted.get(CHANNEL_COUNT - 1));
+	}
+
+	@Test
+	public void testLatestUpdateWinsAndCallbackRunsAfterApply() {
+		final Channel channel = channels.get(0);
+		final Map<Channel, ChannelMetadata> batch = new HashMap<>();
+		batch.put(channel, buildMetadata(7));
+
+		sink.submit(channel, buildMetadata(5));
+		final long[] seen = new long[1];
+		sink.submit(batch, () -> seen[0] = channel.getViewer());
+		runFxQueue();
+
+		assertEquals(7, seen[0]);
+		assertEquals(7, channel.getViewer());
+	}
+
+	@Test
+	public void testPartialUpdatesAreMerged() {
+		final Channel channel = channels.get(0);
+
+		// a poll result and a pushed viewer count in the same batch
+		sink.submit(channel, new ChannelMetadata("new title", 3L, 5000L, true, "new game", "logo", 10L, 100L, false));
+		sink.submit(channel, ChannelMetadata.viewerCount(42));
+		runFxQueue();
+
+		assertEquals(Boolean.TRUE, channel.isOnline());
+		assertEquals(42, channel.getViewer());
+		assertEquals(5000, channel.getUptime());
+		assertEquals("new title", channel.getTitle());
+		assertEquals("new game", channel.getGame());
+	}
+
+	@Test
+	public void testUnchangedChannelsFireNothing() {
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			sink.submit(channels.get(i), buildMetadata(i));
+		}
+		runFxQueue();
+		assertEquals(0, sortedChanges.get());
+	}
+
+	@Test
+	public void testConcurrentBatchesAreAppliedBeforeTheirCallback() throws Exception {
+		final ExecutorService fxThread = Executors.newSingleThreadExecutor();
+		final ChannelUpdateSink concurrentSink = new ChannelUpdateSink(channels, fxThread);
+		final int producers = 4;
+		final int batches = 200;
+		final int perProducer = CHANNEL_COUNT / producers;
+		final AtomicInteger incomplete = new AtomicInteger();
+		final CountDownLatch callbacks = new CountDownLatch(producers * batches);
+
+		final List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			final List<Channel> own = channels.subList(p * perProducer, (p + 1) * perProducer);
+			threads.add(new Thread(() -> {
+				for (int b = 0; b < batches; b++) {
+					final long viewer = CHANNEL_COUNT + b;
+					final Map<Channel, ChannelMetadata> batch = new HashMap<>();
+					own.forEach(channel -> batch.put(channel, buildMetadata(viewer)));
+					concurrentSink.submit(batch, () -> {
+						// later batches of the same producer may already be applied, earlier values must not be seen
+						if (own.stream().anyMatch(channel -> channel.getViewer() < viewer)) {
+							incomplete.incrementAndGet();
+						}
+						callbacks.countDown();
+					});
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue(callbacks.await(10, TimeUnit.SECONDS));
+		assertEquals(0, incomplete.get());
+		fxThread.shutdown();
+	}
+}
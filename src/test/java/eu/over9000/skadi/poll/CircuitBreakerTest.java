@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+	private final CircuitBreaker breaker = new CircuitBreaker(20, 10, 0.5, 1000, 8000);
+
+	@Test
+	public void testOpensWhenMostRequestsFail() {
+		breaker.record(8, 2, 0);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+		breaker.record(0, 10, 0);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest(500));
+		assertEquals(500, breaker.getRemainingOpenTime(500));
+	}
+
+	@Test
+	public void testProbeRecovers() {
+		breaker.record(0, 10, 0);
+
+		assertTrue(breaker.allowRequest(1000));
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertFalse("only one probe", breaker.allowRequest(1000));
+
+		breaker.recordProbe(5, 0, 1100);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest(1100));
+	}
+
+	@Test
+	public void testOnlyProbeDecides() {
+		breaker.record(0, 10, 0);
+		assertTrue(breaker.allowRequest(1000));
+
+		// results of requests sent before the breaker opened
+		breaker.record(10, 0, 1000);
+		breaker.record(0, 10, 1000);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+		breaker.recordProbe(1, 3, 1100);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(2000, breaker.getRemainingOpenTime(1100));
+
+		// a probe result arriving after the breaker reopened
+		breaker.recordProbe(5, 0, 1200);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void testFailedProbeDoublesOpenTime() {
+		breaker.record(0, 10, 0);
+
+		final long[] expected = {2000, 4000, 8000, 8000};
+		long now = 0;
+		for (final long openTime : expected) {
+			now += 10_000;
+			assertTrue(breaker.allowRequest(now));
+			breaker.recordProbe(0, 1, now);
+			assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+			assertEquals(openTime, breaker.getRemainingOpenTime(now));
+		}
+	}
+
+	@Test
+	public void testBackoffGrowsAndIsCapped() {
+		final long interval = 60_000;
+		for (int failures = 1; failures < 10; failures++) {
+			final long max = Math.min(30 * 60_000, interval << failures);
+			final long backoff = ChannelPollScheduler.backoff(interval, failures);
+			assertTrue(backoff >= max / 2 && backoff <= max);
+		}
+	}
+}
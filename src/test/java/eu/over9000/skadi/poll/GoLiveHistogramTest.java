@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.poll;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GoLiveHistogramTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static long at(final int dayOfMonth, final int hour) {
+		// 2016-02-01 is a monday
+		return LocalDateTime.of(2016, 2, dayOfMonth, hour, 5).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	@Test
+	public void testBuckets() {
+		final GoLiveHistogram histogram = new GoLiveHistogram();
+		for (int week = 0; week < 4; week++) {
+			histogram.recordGoLive(at(1 + week * 7, 18));
+		}
+		histogram.recordGoLive(at(3, 12));
+
+		assertEquals(5, histogram.getTotal());
+		assertEquals(4, histogram.getCount(at(22, 18) + TimeUnit.MINUTES.toMillis(30)));
+		assertEquals(0, histogram.getCount(at(22, 19)));
+		assertEquals(0.8, histogram.getShare(at(8, 18)), 0.0001);
+	}
+
+	@Test
+	public void testDecay() {
+		final GoLiveHistogram histogram = new GoLiveHistogram();
+		for (int i = 0; i < 1000; i++) {
+			histogram.recordGoLive(at(1, 18));
+		}
+		assertTrue(histogram.getTotal() <= 100);
+		assertEquals(histogram.getTotal(), histogram.getCount(at(1, 18)));
+	}
+
+	@Test
+	public void testPersistence() throws Exception {
+		final Path file = folder.getRoot().toPath().resolve("golive.dat");
+
+		final GoLiveHistogramStore store = new GoLiveHistogramStore(file);
+		store.recordGoLive("channel", at(2, 20));
+		store.recordGoLive("channel", at(9, 20));
+		store.saveIfDirty();
+
+		final GoLiveHistogramStore loaded = new GoLiveHistogramStore(file);
+		loaded.load();
+
+		assertNull(loaded.get("other"));
+		assertEquals(2, loaded.get("channel").getCount(at(16, 20)));
+		assertEquals(at(9, 20), loaded.get("channel").getLastGoLive());
+	}
+
+	@Test
+	public void testLastSeenOnlinePersistence() throws Exception {
+		final Path file = folder.getRoot().toPath().resolve("golive.dat");
+
+		final GoLiveHistogramStore store = new GoLiveHistogramStore(file);
+		store.recordSeenOnline("channel", at(9, 21));
+		store.recordSeenOnline("removed", at(9, 22));
+		store.remove("removed");
+		store.saveIfDirty();
+
+		final GoLiveHistogramStore loaded = new GoLiveHistogramStore(file);
+		loaded.load();
+
+		assertEquals(at(9, 21), loaded.getLastSeenOnline("channel"));
+		assertEquals(0, loaded.getLastSeenOnline("removed"));
+		assertNull(loaded.get("channel"));
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote;
+
+import eu.over9000.skadi.model.Channel;
+import eu.over9000.skadi.remote.data.BatchMetadata;
+import eu.over9000.skadi.remote.data.ChannelMetadata;
+import eu.over9000.skadi.util.BulkheadExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelDataRetrieverTest {
+
+	private static final int QUEUE_CAPACITY = 16;
+	private static final int CHANNEL_COUNT = 250;
+
+	private static ChannelMetadata buildMetadata(final boolean online) {
+		return new ChannelMetadata("title", 10L, 1000L, online, "game", "logo", 10L, 100L, false);
+	}
+
+	@Test
+	public void testMoreLookupsThanQueueCapacity() throws Exception {
+		final BulkheadExecutor executor = new BulkheadExecutor("test", 2, QUEUE_CAPACITY, Thread::new);
+		final List<Channel> channels = new ArrayList<>();
+		final Map<String, ChannelMetadata> live = new HashMap<>();
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			final Channel channel = new Channel("channel_" + i);
+			channels.add(channel);
+			if (i % 10 == 0) {
+				live.put(channel.getKey().getName(), buildMetadata(true));
+			}
+		}
+
+		final AtomicInteger lookups = new AtomicInteger();
+		final BatchMetadata batch = ChannelDataRetriever.getChannelMetadata(channels, executor, names -> live, channel -> {
+			lookups.incrementAndGet();
+			// every 7th lookup fails
+			return channel.getName().hashCode() % 7 == 0 ? null : buildMetadata(false);
+		}, channel -> {
+		}).get(10, TimeUnit.SECONDS);
+
+		final int expectedLookups = CHANNEL_COUNT - live.size();
+		final int expectedFailures = (int) channels.stream().filter(channel -> !live.containsKey(channel.getKey().getName())).filter(channel -> channel.getName().hashCode() % 7 == 0).count();
+
+		assertEquals(expectedLookups, lookups.get());
+		assertEquals(expectedFailures, batch.getFailedRequests());
+		assertEquals(3 + expectedLookups - expectedFailures, batch.getSucceededRequests());
+		assertEquals(CHANNEL_COUNT - expectedFailures, batch.getMetadata().size());
+		assertTrue(expectedLookups > QUEUE_CAPACITY);
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testFailedLiveLookupCountsOnce() throws Exception {
+		final BulkheadExecutor executor = new BulkheadExecutor("test", 1, QUEUE_CAPACITY, Thread::new);
+		final List<Channel> channels = new ArrayList<>();
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			channels.add(new Channel("channel_" + i));
+		}
+
+		final BatchMetadata batch = ChannelDataRetriever.getChannelMetadata(channels, executor, names -> null, channel -> {
+			throw new AssertionError("no lookups without live status");
+		}, channel -> {
+		}).get(10, TimeUnit.SECONDS);
+
+		assertEquals(0, batch.getSucceededRequests());
+		assertEquals(1, batch.getFailedRequests());
+		assertNull(batch.getMetadata().get(channels.get(0)));
+
+		executor.shutdown();
+	}
+
+	@Test
+	public void testStaleOfflineChannelIsLookedUp() throws Exception {
+		final BulkheadExecutor executor = new BulkheadExecutor("test", 1, QUEUE_CAPACITY, Thread::new);
+		final Channel known = new Channel("known");
+		known.updateFrom(buildMetadata(false));
+		final Channel restored = new Channel("restored");
+		restored.restoreFrom(buildMetadata(false), System.currentTimeMillis());
+
+		final List<Channel> lookedUp = new ArrayList<>();
+		final BatchMetadata batch = ChannelDataRetriever.getChannelMetadata(Arrays.asList(known, restored), executor, names -> new HashMap<>(), channel -> {
+			lookedUp.add(channel);
+			return buildMetadata(false);
+		}, channel -> {
+		}).get(10, TimeUnit.SECONDS);
+
+		assertEquals(Collections.singletonList(restored), lookedUp);
+		assertTrue(batch.getMetadata().get(known).isPartial());
+		assertFalse(batch.getMetadata().get(restored).isPartial());
+
+		executor.shutdown();
+	}
+}
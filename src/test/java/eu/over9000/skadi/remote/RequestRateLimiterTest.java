@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestRateLimiterTest {
+
+	@Test
+	public void testBurstIsNotDelayed() {
+		final RequestRateLimiter limiter = new RequestRateLimiter(1, 5);
+		for (int i = 0; i < 5; i++) {
+			limiter.acquire();
+		}
+		assertEquals(5, limiter.getAcquiredCount());
+		assertEquals(0, limiter.getDelayedCount());
+	}
+
+	@Test
+	public void testRateIsEnforcedAfterBurst() {
+		final RequestRateLimiter limiter = new RequestRateLimiter(20, 2);
+		final long start = System.nanoTime();
+		for (int i = 0; i < 12; i++) {
+			limiter.acquire();
+		}
+		final long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+		// 10 requests beyond the burst at 20 per second
+		assertTrue("finished after " + elapsed + "ms", elapsed >= 450);
+		assertEquals(10, limiter.getDelayedCount());
+		assertTrue(limiter.getMaxWait() >= 40);
+	}
+}
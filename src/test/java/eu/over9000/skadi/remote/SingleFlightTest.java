@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+	@Test
+	public void testConcurrentCallersShareOneRequest() throws Exception {
+		final SingleFlight<String, Integer> flight = new SingleFlight<>();
+		final AtomicInteger requests = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(10);
+
+		final List<Future<Integer>> results = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			results.add(executor.submit(() -> flight.execute("channel", () -> {
+				requests.incrementAndGet();
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				return 42;
+			})));
+		}
+
+		// wait until all callers are either running or waiting for the request
+		while (flight.getExecutedCount() + flight.getCoalescedCount() < 10) {
+			Thread.sleep(5);
+		}
+		release.countDown();
+
+		for (final Future<Integer> result : results) {
+			assertEquals(42, result.get(5, TimeUnit.SECONDS).intValue());
+		}
+		executor.shutdown();
+
+		assertEquals(1, requests.get());
+		assertEquals(1, flight.getExecutedCount());
+		assertEquals(9, flight.getCoalescedCount());
+	}
+
+	@Test
+	public void testFinishedRequestIsNotCached() {
+		final SingleFlight<String, Integer> flight = new SingleFlight<>();
+		final AtomicInteger requests = new AtomicInteger();
+
+		flight.execute("a", requests::incrementAndGet);
+		flight.execute("a", requests::incrementAndGet);
+		flight.execute("b", requests::incrementAndGet);
+
+		assertEquals(3, requests.get());
+		assertEquals(0, flight.getCoalescedCount());
+	}
+
+	@Test
+	public void testFailureIsRethrown() {
+		final SingleFlight<String, Integer> flight = new SingleFlight<>();
+		try {
+			flight.execute("a", () -> {
+				throw new IllegalStateException("failed");
+			});
+			fail();
+		} catch (final IllegalStateException e) {
+			assertEquals("failed", e.getMessage());
+		}
+		assertEquals(1, flight.execute("a", () -> 1).intValue());
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote;
+
+import eu.over9000.skadi.remote.data.ChannelMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamBatchClientTest {
+
+	private static final int CHANNEL_COUNT = 800;
+
+	private TwitchStubServer server;
+	private StreamBatchClient client;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new TwitchStubServer();
+		server.start();
+		client = new StreamBatchClient(server.getApiUrl(), "test", new RequestRateLimiter(1000, 1000));
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void testLiveStatus() throws Exception {
+		server.getLive().add("live_channel");
+
+		final List<String> channels = new ArrayList<>();
+		channels.add("live_channel");
+		channels.add("offline_channel");
+
+		final Map<String, ChannelMetadata> result = client.getLiveStreams(channels);
+
+		assertEquals(1, result.size());
+		assertFalse(result.containsKey("offline_channel"));
+
+		final ChannelMetadata live = result.get("live_channel");
+		assertTrue(live.getOnline());
+		assertEquals("live_channel status", live.getTitle());
+		assertEquals(Long.valueOf("live_channel".length()), live.getViewer());
+		assertTrue(live.getUptime() >= 3600 * 1000);
+		assertFalse(live.hasLogoURL());
+	}
+
+	@Test
+	public void testOneRequestPerPage() throws Exception {
+		final List<String> channels = new ArrayList<>();
+		for (int i = 0; i < CHANNEL_COUNT; i++) {
+			channels.add("channel_" + i);
+			if (i % 10 == 0) {
+				server.getLive().add("channel_" + i);
+			}
+		}
+
+		final Map<String, ChannelMetadata> result = client.getLiveStreams(channels);
+
+		assertEquals(CHANNEL_COUNT / 10, result.size());
+		assertEquals(CHANNEL_COUNT / StreamBatchClient.PAGE_SIZE, server.getRequestCount());
+	}
+}
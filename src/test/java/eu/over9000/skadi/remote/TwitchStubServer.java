@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Local stand-in for the streams endpoint of the twitch API, serves every channel in {@link #getLive()} as live.
+ */
+public class TwitchStubServer {
+
+	private final HttpServer server;
+	private final Set<String> live = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	public TwitchStubServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/kraken/streams", this::handleStreams);
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	public String getApiUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/kraken/";
+	}
+
+	public Set<String> getLive() {
+		return live;
+	}
+
+	public int getRequestCount() {
+		return requestCount.get();
+	}
+
+	private void handleStreams(final HttpExchange exchange) throws IOException {
+		requestCount.incrementAndGet();
+
+		final Set<String> requested = new HashSet<>();
+		final String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			for (final String parameter : query.split("&")) {
+				final String[] pair = parameter.split("=", 2);
+				if (pair.length == 2 && "channel".equals(pair[0])) {
+					requested.addAll(Arrays.asList(URLDecoder.decode(pair[1], "UTF-8").split(",")));
+				}
+			}
+		}
+
+		final List<String> streams = requested.stream().filter(live::contains).map(TwitchStubServer::buildStream).collect(Collectors.toList());
+		final byte[] body = ("{\"_total\":" + streams.size() + ",\"streams\":[" + String.join(",", streams) + "]}").getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static String buildStream(final String name) {
+		final String createdAt = Instant.now().minusSeconds(3600).toString();
+		return "{\"viewers\":" + name.length() + ",\"created_at\":\"" + createdAt + "\",\"channel\":{\"name\":\"" + name + "\",\"status\":\"" + name + " status\",\"game\":\"Game\",\"logo\":null,\"followers\":10,\"views\":100,\"partner\":false}}";
+	}
+}
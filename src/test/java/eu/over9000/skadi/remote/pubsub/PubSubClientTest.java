@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote.pubsub;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PubSubClientTest {
+
+	private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+	private final Set<String> listening = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger lost = new AtomicInteger();
+
+	private PubSubStubServer server;
+	private PubSubClient client;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new PubSubStubServer();
+		client = new PubSubClient(server.getUri(), new PubSubClient.Listener() {
+			@Override
+			public void onStreamUp(final String channel, final long serverTime) {
+				events.add("up " + channel);
+			}
+
+			@Override
+			public void onStreamDown(final String channel) {
+				events.add("down " + channel);
+			}
+
+			@Override
+			public void onViewCount(final String channel, final long viewers) {
+				events.add("viewers " + channel + " " + viewers);
+			}
+
+			@Override
+			public void onListening(final String channel, final boolean listening) {
+				if (listening) {
+					PubSubClientTest.this.listening.add(channel);
+				} else {
+					PubSubClientTest.this.listening.remove(channel);
+					lost.incrementAndGet();
+				}
+			}
+		}, 200);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.stop();
+		server.close();
+	}
+
+	private static void await(final BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			assertTrue("condition not met in time", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	private String nextEvent() throws InterruptedException {
+		return events.poll(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testSubscribedEventsAreDelivered() throws Exception {
+		client.subscribe("Foo");
+		client.start();
+		await(() -> listening.contains("foo"));
+		assertTrue(server.getTopics().contains("video-playback.foo"));
+
+		client.subscribe("bar");
+		await(() -> listening.contains("bar"));
+		assertEquals(2, server.getTopics().size());
+
+		server.streamUp("foo", System.currentTimeMillis());
+		assertEquals("up foo", nextEvent());
+		server.viewCount("bar", 42);
+		assertEquals("viewers bar 42", nextEvent());
+		server.streamDown("foo");
+		assertEquals("down foo", nextEvent());
+
+		client.unsubscribe("foo");
+		assertFalse(listening.contains("foo"));
+		await(() -> !server.getTopics().contains("video-playback.foo"));
+		assertTrue(client.isConnected());
+	}
+
+	@Test
+	public void testResubscribesAfterReconnect() throws Exception {
+		for (int i = 0; i < 120; i++) {
+			client.subscribe("channel_" + i);
+		}
+		client.start();
+		await(() -> listening.size() == 120);
+		assertEquals(120, server.getTopics().size());
+		assertEquals(3, client.getConnectionCount());
+
+		server.requestReconnect();
+		await(() -> lost.get() == 120);
+		await(() -> listening.size() == 120);
+		assertEquals(120, server.getTopics().size());
+		assertEquals(6, server.getConnectionCount());
+	}
+
+	@Test
+	public void testChannelsBeyondAllConnectionsAreNotListened() throws Exception {
+		final int capacity = PubSubClient.MAX_CONNECTIONS * PubSubClient.MAX_TOPICS_PER_CONNECTION;
+		for (int i = 0; i < capacity + 5; i++) {
+			client.subscribe("channel_" + i);
+		}
+		client.start();
+		await(() -> listening.size() == capacity);
+		assertEquals(PubSubClient.MAX_CONNECTIONS, client.getConnectionCount());
+		assertFalse(listening.contains("channel_" + capacity));
+
+		// a freed topic is taken by a waiting channel
+		client.unsubscribe("channel_0");
+		await(() -> listening.contains("channel_" + capacity));
+		assertEquals(capacity, listening.size());
+	}
+
+	@Test
+	public void testRejectedListenIsNotAcknowledged() throws Exception {
+		client.subscribe("foo");
+		client.start();
+		await(() -> listening.contains("foo"));
+
+		server.rejectChannel("bar");
+		client.subscribe("bar");
+		client.subscribe("baz");
+
+		// responses arrive in order, so the one for bar was handled before baz is acknowledged
+		await(() -> listening.contains("baz"));
+		assertFalse(listening.contains("bar"));
+	}
+
+	@Test
+	public void testRestartKeepsOneConnection() throws Exception {
+		client.subscribe("foo");
+		client.start();
+		await(() -> listening.contains("foo"));
+
+		// like toggling push updates in the settings, the old threads may still be connecting or reading
+		for (int i = 0; i < 20; i++) {
+			client.stop();
+			client.start();
+		}
+		await(() -> listening.contains("foo") && server.getOpenConnectionCount() == 1);
+		// the stopped threads are gone, none of them reconnects later on
+		Thread.sleep(500);
+		assertEquals(1, server.getOpenConnectionCount());
+		assertTrue(listening.contains("foo"));
+		assertTrue(client.isConnected());
+	}
+
+	@Test
+	public void testKeepsConnectionAliveWithPings() throws Exception {
+		client.subscribe("foo");
+		client.start();
+		await(() -> listening.contains("foo"));
+		await(() -> server.getPingCount() >= 2);
+		assertTrue(client.isConnected());
+	}
+}
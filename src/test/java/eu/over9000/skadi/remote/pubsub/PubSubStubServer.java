@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.remote.pubsub;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+/**
+ * In-process stand-in for the twitch pubsub server. Accepts websocket connections, keeps track of the topics the
+ * clients listen to, answers pings and can push playback events to the clients. Like the real server it refuses more
+ * than 50 topics on one connection.
+ */
+public class PubSubStubServer implements Closeable {
+
+	private static final int MAX_TOPICS_PER_CONNECTION = 50;
+
+	private final ServerSocket serverSocket;
+	private final Set<String> topics = ConcurrentHashMap.newKeySet();
+	private final CopyOnWriteArrayList<Connection> connections = new CopyOnWriteArrayList<>();
+	private final AtomicInteger connectionCount = new AtomicInteger();
+	private final AtomicInteger pingCount = new AtomicInteger();
+	private final Set<String> rejectedTopics = ConcurrentHashMap.newKeySet();
+
+	public PubSubStubServer() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		final Thread acceptor = new Thread(this::accept, "pubsub stub acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public URI getUri() {
+		return URI.create("ws://127.0.0.1:" + serverSocket.getLocalPort() + "/");
+	}
+
+	public Set<String> getTopics() {
+		return topics;
+	}
+
+	public int getConnectionCount() {
+		return connectionCount.get();
+	}
+
+	/**
+	 * @return the number of connections currently open
+	 */
+	public int getOpenConnectionCount() {
+		return connections.size();
+	}
+
+	public int getPingCount() {
+		return pingCount.get();
+	}
+
+	/**
+	 * Answers LISTEN requests for the channel with an error.
+	 */
+	public void rejectChannel(final String channel) {
+		rejectedTopics.add("video-playback." + channel.toLowerCase(Locale.ENGLISH));
+	}
+
+	public void streamUp(final String channel, final long serverTime) throws IOException {
+		publish(channel, "{\"type\":\"stream-up\",\"server_time\":" + (serverTime / 1000.0) + ",\"play_delay\":0}");
+	}
+
+	public void streamDown(final String channel) throws IOException {
+		publish(channel, "{\"type\":\"stream-down\",\"server_time\":" + (System.currentTimeMillis() / 1000.0) + "}");
+	}
+
+	public void viewCount(final String channel, final long viewers) throws IOException {
+		publish(channel, "{\"type\":\"viewcount\",\"server_time\":" + (System.currentTimeMillis() / 1000.0) + ",\"viewers\":" + viewers + "}");
+	}
+
+	/**
+	 * Asks all clients to reconnect, like the real server does before maintenance.
+	 */
+	public void requestReconnect() throws IOException {
+		topics.clear();
+		for (final Connection connection : connections) {
+			connection.topics.clear();
+			connection.send("{\"type\":\"RECONNECT\"}");
+		}
+	}
+
+	private void publish(final String channel, final String event) throws IOException {
+		final String topic = "video-playback." + channel.toLowerCase(Locale.ENGLISH);
+		final JsonObject data = new JsonObject();
+		data.addProperty("topic", topic);
+		data.addProperty("message", event);
+		final JsonObject message = new JsonObject();
+		message.addProperty("type", "MESSAGE");
+		message.add("data", data);
+
+		for (final Connection connection : connections) {
+			connection.send(message.toString());
+		}
+	}
+
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				final Connection connection = new Connection(serverSocket.accept());
+				final Thread reader = new Thread(connection::run, "pubsub stub connection");
+				reader.setDaemon(true);
+				reader.start();
+			} catch (final IOException e) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		for (final Connection connection : connections) {
+			connection.socket.close();
+		}
+	}
+
+	private final class Connection {
+		private final Socket socket;
+		private final Set<String> topics = ConcurrentHashMap.newKeySet();
+		private OutputStream out;
+
+		private Connection(final Socket socket) {
+			this.socket = socket;
+		}
+
+		private void run() {
+			try {
+				final InputStream rawIn = new BufferedInputStream(socket.getInputStream());
+				out = socket.getOutputStream();
+
+				String key = null;
+				String line;
+				while (!(line = WebSocket.readLine(rawIn)).isEmpty()) {
+					if (line.toLowerCase(Locale.ENGLISH).startsWith("sec-websocket-key:")) {
+						key = line.substring(line.indexOf(':') + 1).trim();
+					}
+				}
+				synchronized (this) {
+					out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Accept: " + WebSocket.acceptKey(key) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+					out.flush();
+				}
+				connections.add(this);
+				connectionCount.incrementAndGet();
+
+				final DataInputStream in = new DataInputStream(rawIn);
+				while (true) {
+					final int b0 = in.read();
+					if (b0 == -1 || (b0 & 0x0F) == 0x8) {
+						break;
+					}
+					final String message = new String(readPayload(in), StandardCharsets.UTF_8);
+					handle(message);
+				}
+			} catch (final IOException ignored) {
+				// client gone
+			} finally {
+				connections.remove(this);
+				PubSubStubServer.this.topics.removeAll(topics);
+				try {
+					socket.close();
+				} catch (final IOException ignored) {
+					// already closed
+				}
+			}
+		}
+
+		private byte[] readPayload(final DataInputStream in) throws IOException {
+			final int b1 = in.readUnsignedByte();
+			long length = b1 & 0x7F;
+			if (length == 126) {
+				length = in.readUnsignedShort();
+			} else if (length == 127) {
+				length = in.readLong();
+			}
+			final byte[] mask = new byte[4];
+			in.readFully(mask);
+			final byte[] payload = new byte[(int) length];
+			in.readFully(payload);
+			for (int i = 0; i < payload.length; i++) {
+				payload[i] ^= mask[i & 3];
+			}
+			return payload;
+		}
+
+		private void handle(final String message) throws IOException {
+			final JsonObject json = new JsonParser().parse(message).getAsJsonObject();
+			final String type = json.get("type").getAsString();
+			if ("PING".equals(type)) {
+				pingCount.incrementAndGet();
+				send("{\"type\":\"PONG\"}");
+				return;
+			}
+
+			final String nonce = json.get("nonce").getAsString();
+			final JsonArray requested = json.getAsJsonObject("data").getAsJsonArray("topics");
+			if ("LISTEN".equals(type)) {
+				if (StreamSupport.stream(requested.spliterator(), false).anyMatch(topic -> rejectedTopics.contains(topic.getAsString()))) {
+					send("{\"type\":\"RESPONSE\",\"nonce\":\"" + nonce + "\",\"error\":\"ERR_BADAUTH\"}");
+					return;
+				}
+				if (topics.size() + requested.size() > MAX_TOPICS_PER_CONNECTION) {
+					send("{\"type\":\"RESPONSE\",\"nonce\":\"" + nonce + "\",\"error\":\"ERR_TOO_MANY_TOPICS\"}");
+					return;
+				}
+			}
+			requested.forEach(topic -> {
+				if ("LISTEN".equals(type)) {
+					topics.add(topic.getAsString());
+					PubSubStubServer.this.topics.add(topic.getAsString());
+				} else {
+					topics.remove(topic.getAsString());
+					PubSubStubServer.this.topics.remove(topic.getAsString());
+				}
+			});
+			send("{\"type\":\"RESPONSE\",\"nonce\":\"" + nonce + "\",\"error\":\"\"}");
+		}
+
+		private synchronized void send(final String text) throws IOException {
+			final byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+			final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+			frame.write(0x81);
+			if (payload.length < 126) {
+				frame.write(payload.length);
+			} else {
+				frame.write(126);
+				frame.write(payload.length >>> 8);
+				frame.write(payload.length);
+			}
+			frame.write(payload);
+			out.write(frame.toByteArray());
+			out.flush();
+		}
+	}
+}
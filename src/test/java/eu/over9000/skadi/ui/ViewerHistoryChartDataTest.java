@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.ui;
+
+import eu.over9000.skadi.model.ViewerHistory;
+import javafx.collections.ListChangeListener;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ViewerHistoryChartDataTest {
+
+	@Test
+	public void testChartData() {
+		final ViewerHistory history = new ViewerHistory(10, Long.MAX_VALUE);
+		history.add(0, 5);
+		history.add(1, 6);
+
+		final ViewerHistoryChartData data = new ViewerHistoryChartData(history);
+		final AtomicInteger changes = new AtomicInteger();
+		data.addListener((ListChangeListener<Object>) c -> changes.incrementAndGet());
+		assertEquals(2, data.size());
+
+		for (int i = 2; i < 15; i++) {
+			history.add(i, i + 5);
+		}
+
+		assertEquals(13, changes.get());
+		assertEquals(10, data.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(history.getTime(i), data.get(i).getXValue().longValue());
+			assertEquals(history.getViewer(i), data.get(i).getYValue().longValue());
+		}
+	}
+
+	@Test
+	public void testDownsampledChartData() {
+		final ViewerHistory history = new ViewerHistory(5000, Long.MAX_VALUE);
+		final ViewerHistoryChartData data = new ViewerHistoryChartData(history, 100);
+		final Random random = new Random(7);
+
+		for (int i = 0; i < 3000; i++) {
+			// a single spike has to survive the downsampling
+			history.add(i * 1000L, i == 1234 ? 50_000 : 1000 + random.nextInt(100));
+			assertTrue(data.size() <= 101);
+		}
+
+		assertEquals(history.getTime(0), data.get(0).getXValue().longValue());
+		assertEquals(history.getTime(history.size() - 1), data.get(data.size() - 1).getXValue().longValue());
+		assertTrue(data.stream().anyMatch(point -> point.getYValue().longValue() == 50_000));
+		for (int i = 1; i < data.size(); i++) {
+			assertTrue(data.get(i - 1).getXValue().longValue() < data.get(i).getXValue().longValue());
+		}
+
+		// without expired samples the incremental result matches downsampling everything at once
+		final ViewerHistoryChartData rebuilt = new ViewerHistoryChartData(history, 100);
+		assertEquals(rebuilt.size(), data.size());
+		for (int i = 0; i < data.size(); i++) {
+			assertEquals(rebuilt.get(i).getXValue(), data.get(i).getXValue());
+		}
+
+		data.setMaxPoints(20);
+		assertTrue(data.size() <= 21);
+		assertTrue(data.stream().anyMatch(point -> point.getYValue().longValue() == 50_000));
+	}
+
+	@Test
+	public void testDownsampledChartDataExpiry() {
+		final ViewerHistory history = new ViewerHistory(500, Long.MAX_VALUE);
+		final ViewerHistoryChartData data = new ViewerHistoryChartData(history, 50);
+
+		for (int i = 0; i < 3000; i++) {
+			history.add(i, i % 97);
+			assertTrue(data.size() <= 51);
+			assertEquals(history.getTime(0), data.get(0).getXValue().longValue());
+			assertEquals(i, data.get(data.size() - 1).getXValue().longValue());
+		}
+	}
+}
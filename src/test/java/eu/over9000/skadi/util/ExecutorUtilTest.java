@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2014-2016 Jan Strauß <jan[at]over9000.eu>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package eu.over9000.skadi.util;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExecutorUtilTest {
+
+	@Test
+	public void testBlockingTasksDoNotLimitVirtualThreads() throws Exception {
+		final ThreadFactory factory = ExecutorUtil.createVirtualThreadFactory("test");
+		Assume.assumeNotNull(factory);
+		final ExecutorService executor = new BulkheadExecutor("test", 1000, 1000, factory);
+
+		// every task blocks until all of them are running, far more than 64 platform threads could hold
+		final CountDownLatch running = new CountDownLatch(1000);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Future<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			futures.add(executor.submit(() -> {
+				running.countDown();
+				release.await();
+				return Thread.currentThread().getName();
+			}));
+		}
+		assertTrue(running.await(30, TimeUnit.SECONDS));
+		release.countDown();
+		for (final Future<String> future : futures) {
+			assertTrue(future.get(10, TimeUnit.SECONDS).startsWith("Skadi-pool-test-virtual-"));
+		}
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testVirtualThreadModeSelection() throws Exception {
+		final String previous = System.getProperty(ExecutorUtil.VIRTUAL_THREADS_PROPERTY);
+		try {
+			System.clearProperty(ExecutorUtil.VIRTUAL_THREADS_PROPERTY);
+			assertFalse(ExecutorUtil.useVirtualThreads());
+
+			System.setProperty(ExecutorUtil.VIRTUAL_THREADS_PROPERTY, "true");
+			// falls back to platform threads on runtimes without virtual threads
+			assertEquals(ExecutorUtil.createVirtualThreadFactory("test") != null, ExecutorUtil.useVirtualThreads());
+		} finally {
+			if (previous == null) {
+				System.clearProperty(ExecutorUtil.VIRTUAL_THREADS_PROPERTY);
+			} else {
+				System.setProperty(ExecutorUtil.VIRTUAL_THREADS_PROPERTY, previous);
+			}
+		}
+	}
+
+	@Test
+	public void testPlatformThreadExecutor() throws Exception {
+		final BulkheadExecutor executor = ExecutorUtil.createExecutor(Workload.GENERAL, false);
+		assertEquals(Workload.GENERAL.getThreads(), executor.getMaximumPoolSize());
+		assertTrue(executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS).startsWith("Skadi-pool-general-thread-"));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testVirtualThreadExecutor() throws Exception {
+		Assume.assumeNotNull(ExecutorUtil.createVirtualThreadFactory("test"));
+		final BulkheadExecutor executor = ExecutorUtil.createExecutor(Workload.GENERAL, true);
+		assertTrue(executor.getMaximumPoolSize() > Workload.GENERAL.getThreads());
+		assertTrue(executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS).startsWith("Skadi-pool-general-virtual-"));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testFullBulkheadRejects() throws Exception {
+		final BulkheadExecutor executor = new BulkheadExecutor("test", 1, 2, Thread::new);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		// one running, two queued
+		for (int i = 0; i < 3; i++) {
+			executor.execute(() -> {
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		try {
+			executor.execute(() -> {
+			});
+			fail();
+		} catch (final RejectedExecutionException e) {
+			assertEquals(1, executor.getRejectedCount());
+		}
+
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(3, executor.getCompletedTaskCount());
+	}
+}
@@ -20,27 +20,23 @@
  * SOFTWARE.
  */
 
-package eu.over9000.skadi.service;
+package eu.over9000.skadi.util;
 
-import eu.over9000.cathode.data.PanelData;
-import eu.over9000.skadi.util.PanelUtil;
-import javafx.concurrent.Task;
-import javafx.scene.layout.VBox;
+import org.junit.Test;
 
-public class PanelConstructionService extends AbstractSkadiService<VBox> {
-	private final PanelData panel;
+import static org.junit.Assert.assertEquals;
 
-	public PanelConstructionService(final PanelData panel) {
-		this.panel = panel;
-	}
+public class TwitchUtilTest {
+
+	@Test
+	public void testOneTokenPerRequest() {
+		final long before = TwitchUtil.getRateLimiter().getAcquiredCount();
+
+		for (int i = 0; i < 3; i++) {
+			final String result = "response " + i;
+			assertEquals(result, TwitchUtil.request(twitch -> result));
+		}
 
-	@Override
-	protected Task<VBox> createTask() {
-		return new Task<VBox>() {
-			@Override
-			protected VBox call() throws Exception {
-				return PanelUtil.buildPanel(panel);
-			}
-		};
+		assertEquals(before + 3, TwitchUtil.getRateLimiter().getAcquiredCount());
 	}
 }